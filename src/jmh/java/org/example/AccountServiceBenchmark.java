@@ -0,0 +1,91 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * SimpleAccountService over the in-memory ledger.
+ * The plain methods run on one thread; the *Contended variants put every
+ * benchmark thread on the same account (or account pair). The *Cents variants
+ * skip the dollar conversion at the service boundary.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AccountServiceBenchmark {
+
+    private static final int CUSTOMER = 952141;
+    // large enough that withdrawals and one-way transfers never run dry during a run
+    private static final long START_CENTS = Long.MAX_VALUE / 4;
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        ConcurrentLedger ledger;
+        AccountService service;
+        int checking;
+        int savings;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            ledger = new ConcurrentLedger();
+            service = AccountService.of(ledger);
+            checking = ledger.create(CUSTOMER, AccountType.CHECKING, START_CENTS);
+            savings = ledger.create(CUSTOMER, AccountType.SAVINGS, START_CENTS);
+        }
+    }
+
+    @Benchmark
+    public double deposit(Shared s) {
+        return s.service.deposit(CUSTOMER, s.checking, 1.25);
+    }
+
+    @Benchmark
+    public double withdraw(Shared s) {
+        return s.service.withdraw(CUSTOMER, s.checking, 1.25);
+    }
+
+    @Benchmark
+    public AccountService.TransferResult transfer(Shared s) {
+        return s.service.transfer(CUSTOMER, s.checking, s.savings, 1.25);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public double depositContended(Shared s) {
+        return s.service.deposit(CUSTOMER, s.checking, 1.25);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public double withdrawContended(Shared s) {
+        return s.service.withdraw(CUSTOMER, s.checking, 1.25);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public AccountService.TransferResult transferContended(Shared s) {
+        return s.service.transfer(CUSTOMER, s.checking, s.savings, 1.25);
+    }
+
+    @Benchmark
+    public long depositCents(Shared s) {
+        return s.service.depositCents(CUSTOMER, s.checking, 125);
+    }
+
+    @Benchmark
+    public long withdrawCents(Shared s) {
+        return s.service.withdrawCents(CUSTOMER, s.checking, 125);
+    }
+
+    @Benchmark
+    public AccountService.TransferResult transferCents(Shared s) {
+        return s.service.transferCents(CUSTOMER, s.checking, s.savings, 125);
+    }
+}
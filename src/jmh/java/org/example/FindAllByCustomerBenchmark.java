@@ -0,0 +1,51 @@
+package org.example;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/** Listing a customer's accounts, as OptionMenu does for every account choice. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FindAllByCustomerBenchmark {
+
+    private static final int CUSTOMER = 952141;
+
+    @Param({"1", "10", "1000"})
+    public int accountsPerCustomer;
+
+    private ConcurrentLedger ledger;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ledger = new ConcurrentLedger();
+        for (int i = 0; i < accountsPerCustomer; i++) {
+            ledger.create(CUSTOMER, i % 2 == 0 ? AccountType.CHECKING : AccountType.SAVINGS, 50_000);
+        }
+        // unrelated customers so the index isn't trivially small
+        for (int c = 1; c <= 10_000; c++) {
+            ledger.create(c, AccountType.CHECKING, 50_000);
+        }
+    }
+
+    @Benchmark
+    public List<Account> findAll() {
+        return ledger.findAllByCustomer(CUSTOMER);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<Account> findAllContended() {
+        return ledger.findAllByCustomer(CUSTOMER);
+    }
+}
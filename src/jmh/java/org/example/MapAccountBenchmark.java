@@ -0,0 +1,47 @@
+package org.example;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Row-to-Account mapping in JdbcAccountRepository, against a canned one-row
+ * ResultSet so only our own code is measured (no driver, no network).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MapAccountBenchmark {
+
+    private ResultSet row;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        row = (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    String column = args != null && args.length > 0 ? String.valueOf(args[0]) : "";
+                    switch (method.getName() + ":" + column) {
+                        case "getInt:ACCOUNTNUMBER": return 1001;
+                        case "getString:ACCOUNTTYPE": return "checking ";
+                        case "getLong:ACCOUNTBALANCE": return 123_456L;
+                        default: throw new UnsupportedOperationException(method.getName() + " " + column);
+                    }
+                });
+    }
+
+    @Benchmark
+    public Account mapAccount() throws SQLException {
+        return JdbcAccountRepository.mapAccount(952141, row);
+    }
+}
@@ -0,0 +1,34 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** OptionMenu's balance formatting, printed for every account line and result. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MoneyFormatBenchmark {
+
+    @Param({"7.5", "1234567.89"})
+    public double amount;
+
+    private OptionMenu menu;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        menu = AppConfig.devATM();
+    }
+
+    @Benchmark
+    public String formatMoney() {
+        return menu.formatMoney(amount);
+    }
+}
@@ -1,9 +1,20 @@
 package org.example;
 
+import java.io.InputStream;
+import java.io.PrintStream;
+
 public class ATM extends OptionMenu {
     public ATM(AuthenticationRepository auth,
                AccountRepository accounts,
                AccountService service) {
         super(auth, accounts, service);
     }
+
+    public ATM(AuthenticationRepository auth,
+               AccountRepository accounts,
+               AccountService service,
+               InputStream in,
+               PrintStream out) {
+        super(auth, accounts, service, in, out);
+    }
 }
@@ -5,16 +5,35 @@ public class Account {
     private final AccountType accountType;
     private final int customerNumber;
     private final int accountNumber;
-    private double accountBalance;
+    private long balanceCents; // exact, same unit as the ACCOUNTBALANCE column
+    private long version; // ACCOUNTVERSION when read; 0 where the repository keeps none
 
     //constructor
     public Account(int customerNumber, int accountNumber, AccountType type, double startingBalance) {
+        this(customerNumber, accountNumber, type, Math.round(startingBalance * 100.0));
+    }
+
+    // private, so callers outside never hit the long/double overload ambiguity
+    private Account(int customerNumber, int accountNumber, AccountType type, long balanceCents) {
         this.customerNumber = customerNumber;
         this.accountType = type;
-        this.accountBalance = startingBalance;
+        this.balanceCents = balanceCents;
         this.accountNumber = accountNumber;
     }
 
+    /** Account with a balance given in cents (what every repository stores). */
+    public static Account ofCents(int customerNumber, int accountNumber, AccountType type, long balanceCents) {
+        return new Account(customerNumber, accountNumber, type, balanceCents);
+    }
+
+    /** As read from a repository that versions its rows (see {@link AccountRepository#save}). */
+    public static Account ofCents(int customerNumber, int accountNumber, AccountType type, long balanceCents,
+                                  long version) {
+        Account account = new Account(customerNumber, accountNumber, type, balanceCents);
+        account.version = version;
+        return account;
+    }
+
     //getters
     public int getAccountNumber() {return accountNumber;}
 
@@ -22,23 +41,32 @@ public class Account {
         return customerNumber;
     }
 
-    public double getAccountBalance(){return accountBalance;}
+    /** Balance in dollars, for display; use {@link #getBalanceCents()} for arithmetic. */
+    public double getAccountBalance(){return balanceCents / 100.0;}
+
+    public long getBalanceCents() {return balanceCents;}
 
     public AccountType getAccountType(){return accountType;}
 
+    /** Row version this balance was read at; {@link AccountRepository#save} compares it. */
+    public long getVersion() {return version;}
+
+    void setVersion(long version) {this.version = version;}
+
     //input validation should be in the GUI, as well as output (must be a number and positive), only logic to make sure transaction woln't bounce goes here
     //deposit money into account
     public boolean deposit(double amount) {
-        accountBalance += amount;
+        balanceCents += Math.round(amount * 100.0);
         return true;
     }
 
     //withdraw money from account
     public boolean withdraw(double amount) {
-        if(accountBalance < amount) {
+        long cents = Math.round(amount * 100.0);
+        if(balanceCents < cents) {
             return false;
         } else {
-            accountBalance -= amount;
+            balanceCents -= cents;
             return true;
         }
     }
@@ -0,0 +1,13 @@
+package org.example;
+
+/**
+ * {@link AccountRepository#save} found the account changed since it was read (another
+ * terminal, or any balance operation, got there first). Read it again and reapply.
+ */
+public class AccountConflictException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public AccountConflictException(String message) {
+        super(message);
+    }
+}
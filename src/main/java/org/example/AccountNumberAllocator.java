@@ -0,0 +1,101 @@
+package org.example;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out account numbers from blocks reserved in advance (hi/lo style).
+ * <p>
+ * {@link #next()} is a single atomic increment while the current block lasts; only the
+ * thread that finds it exhausted goes back to the {@link BlockSource} for another one.
+ * Numbers left in a block when the process stops are never used, so gaps are expected.
+ */
+final class AccountNumberAllocator {
+
+    /** Reserves {@code count} account numbers no other allocator will ever receive. */
+    @FunctionalInterface
+    interface BlockSource {
+        int[] reserve(int count);
+    }
+
+    private static final class Block {
+        final int[] numbers;
+        final AtomicInteger next = new AtomicInteger();
+
+        Block(int[] numbers) {
+            this.numbers = numbers;
+        }
+    }
+
+    private final BlockSource source;
+    private final int blockSize;
+    private volatile Block current = new Block(new int[0]);
+
+    AccountNumberAllocator(BlockSource source, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        this.source = Objects.requireNonNull(source, "block source is required");
+        this.blockSize = blockSize;
+    }
+
+    /** In-process source: consecutive ranges taken from {@code counter}. */
+    static BlockSource consecutive(AtomicInteger counter) {
+        return count -> {
+            int first = counter.getAndAdd(count);
+            int[] numbers = new int[count];
+            for (int i = 0; i < count; i++) {
+                numbers[i] = first + i;
+            }
+            return numbers;
+        };
+    }
+
+    int next() {
+        while (true) {
+            Block b = current;
+            int i = b.next.getAndIncrement();
+            if (i < b.numbers.length) {
+                return b.numbers[i];
+            }
+            refill(b);
+        }
+    }
+
+    /**
+     * {@code count} numbers at once. Large requests are reserved straight from the source
+     * in one call instead of draining block after block.
+     */
+    int[] next(int count) {
+        int[] numbers = new int[count];
+        if (count < blockSize) {
+            for (int i = 0; i < count; i++) {
+                numbers[i] = next();
+            }
+            return numbers;
+        }
+        int filled = 0;
+        while (filled < count) {
+            int[] reserved = source.reserve(count - filled);
+            if (reserved.length == 0) {
+                throw new IllegalStateException("Account number source returned an empty block");
+            }
+            // a source may hand back more than asked for; the surplus is a gap like any other
+            int n = Math.min(reserved.length, count - filled);
+            System.arraycopy(reserved, 0, numbers, filled, n);
+            filled += n;
+        }
+        return numbers;
+    }
+
+    private synchronized void refill(Block exhausted) {
+        if (current != exhausted) {
+            return; // another thread already refilled
+        }
+        int[] numbers = source.reserve(blockSize);
+        if (numbers.length == 0) {
+            throw new IllegalStateException("Account number source returned an empty block");
+        }
+        current = new Block(numbers);
+    }
+}
@@ -0,0 +1,403 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Daily totals over every account, computed in one streaming pass with no Account objects:
+ * count and sum per {@link AccountType}, number of customers, the top N accounts and top N
+ * customers by balance, and how many balances fall in each power-of-ten bucket.
+ * <p>
+ * Both sources hand accounts to the same primitive accumulator, grouped by customer so a
+ * customer's total is complete before the next customer starts:
+ * <ul>
+ *   <li>{@link #of(OracleDBUtil)}: customer-number ranges read in parallel, each one
+ *       query ordered by customer with a large fetch size (ATM_REPORT_FETCH_SIZE).</li>
+ *   <li>{@link #of(ConcurrentLedger)}: a parallel stream over
+ *       {@link ConcurrentLedger#forEachByCustomer} partitions.</li>
+ * </ul>
+ * ATM_REPORT_PARTITIONS sets the number of ranges/partitions, ATM_REPORT_TOP_N the length
+ * of the top lists.
+ * <p>
+ * Balances are read while traffic continues, so totals are as of "during the run", not
+ * one instant; run it off-peak (or against a paused store) for an exact reconciliation.
+ */
+public final class AccountReport {
+    static final String ENV_PARTITIONS = "ATM_REPORT_PARTITIONS";
+    static final String ENV_FETCH_SIZE = "ATM_REPORT_FETCH_SIZE";
+    static final String ENV_TOP_N = "ATM_REPORT_TOP_N";
+
+    private static final AccountType[] TYPES = AccountType.values();
+
+    // lower bounds in cents; a balance lands in the last bucket whose bound it reaches
+    private static final long[] BUCKET_FLOORS =
+            {Long.MIN_VALUE, 0, 1, 100, 10_000, 1_000_000, 100_000_000, 10_000_000_000L};
+    private static final String[] BUCKET_LABELS =
+            {"negative", "zero", "under $1", "$1-$100", "$100-$10K", "$10K-$1M", "$1M-$100M", "$100M and up"};
+
+    private static final String SQL_CUSTOMER_RANGE =
+            "SELECT MIN(CUSTOMERNUMBER), MAX(CUSTOMERNUMBER) FROM CUSTOMERACCOUNTS";
+
+    private static final String SQL_STREAM =
+            "SELECT CUSTOMERNUMBER, ACCOUNTNUMBER, " + typeOrdinalSql() + ", ACCOUNTBALANCE " +
+            "FROM CUSTOMERACCOUNTS WHERE CUSTOMERNUMBER >= ? AND CUSTOMERNUMBER <= ? " +
+            "ORDER BY CUSTOMERNUMBER";
+
+    /** An account or customer and its balance (total balance, for a customer). */
+    public static final class Ranked {
+        public final int number;
+        public final long cents;
+
+        Ranked(int number, long cents) {
+            this.number = number;
+            this.cents = cents;
+        }
+    }
+
+    private final Totals totals;
+    private final long elapsedNanos;
+
+    private AccountReport(Totals totals, long elapsedNanos) {
+        this.totals = totals;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    // ---- sources -------------------------------------------------------------------
+
+    public static AccountReport of(ConcurrentLedger ledger) {
+        return of(ledger, partitionsFromEnv(), EnvConfig.integer(ENV_TOP_N, 10));
+    }
+
+    static AccountReport of(ConcurrentLedger ledger, int parts, int topN) {
+        long start = System.nanoTime();
+        Totals totals = IntStream.range(0, parts).parallel()
+                .mapToObj(part -> {
+                    Totals t = new Totals(topN);
+                    ledger.forEachByCustomer(part, parts, t);
+                    return t.finish();
+                })
+                .reduce(Totals::merge)
+                .orElseGet(() -> new Totals(topN));
+        return new AccountReport(totals, System.nanoTime() - start);
+    }
+
+    public static AccountReport of(OracleDBUtil db) {
+        return of(db, partitionsFromEnv(), EnvConfig.integer(ENV_TOP_N, 10),
+                EnvConfig.integer(ENV_FETCH_SIZE, 10_000));
+    }
+
+    /** Streams CUSTOMERACCOUNTS as {@code parts} customer ranges, one connection each. */
+    static AccountReport of(OracleDBUtil db, int parts, int topN, int fetchSize) {
+        long start = System.nanoTime();
+        long[] range = customerRange(db);
+        if (range == null) {
+            return new AccountReport(new Totals(topN), System.nanoTime() - start);
+        }
+        long span = (range[1] - range[0]) / parts + 1;
+
+        ExecutorService pool = Executors.newFixedThreadPool(parts, r -> {
+            Thread t = new Thread(r, "account-report");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Totals>> futures = new ArrayList<>(parts);
+            for (long lo = range[0]; lo <= range[1]; lo += span) {
+                long from = lo;
+                long to = Math.min(range[1], lo + span - 1);
+                futures.add(pool.submit(() -> stream(db, from, to, fetchSize, topN)));
+            }
+            Totals totals = new Totals(topN);
+            for (Future<Totals> f : futures) {
+                totals = totals.merge(f.get());
+            }
+            return new AccountReport(totals, System.nanoTime() - start);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building the account report", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Failed to build the account report", ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static int partitionsFromEnv() {
+        return Math.max(1, EnvConfig.integer(ENV_PARTITIONS, Runtime.getRuntime().availableProcessors()));
+    }
+
+    private static long[] customerRange(OracleDBUtil db) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SQL_CUSTOMER_RANGE);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            long min = rs.getLong(1);
+            return rs.wasNull() ? null : new long[]{min, rs.getLong(2)};
+        } catch (SQLException ex) {
+            throw new RuntimeException("Failed to read the customer number range", ex);
+        }
+    }
+
+    private static Totals stream(OracleDBUtil db, long from, long to, int fetchSize, int topN) throws SQLException {
+        Totals t = new Totals(topN);
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SQL_STREAM)) {
+            ps.setLong(1, from);
+            ps.setLong(2, to);
+            ps.setFetchSize(fetchSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int type = rs.getInt(3);
+                    if (type < 0) {
+                        throw new SQLException("Unknown account type for account " + rs.getInt(2));
+                    }
+                    t.visit(rs.getInt(1), rs.getInt(2), TYPES[type], rs.getLong(4));
+                }
+            }
+        }
+        return t.finish();
+    }
+
+    /** DECODE(...) turning ACCOUNTTYPE into the AccountType ordinal, so rows carry no strings. */
+    private static String typeOrdinalSql() {
+        StringBuilder sb = new StringBuilder("DECODE(UPPER(TRIM(ACCOUNTTYPE))");
+        for (AccountType type : TYPES) {
+            sb.append(", '").append(type.name()).append("', ").append(type.ordinal());
+        }
+        return sb.append(", -1)").toString();
+    }
+
+    // ---- results -------------------------------------------------------------------
+
+    public long accounts() {
+        long n = 0;
+        for (long c : totals.count) {
+            n += c;
+        }
+        return n;
+    }
+
+    public long totalCents() {
+        long sum = 0;
+        for (long c : totals.sum) {
+            sum += c;
+        }
+        return sum;
+    }
+
+    public long accounts(AccountType type) {
+        return totals.count[type.ordinal()];
+    }
+
+    public long totalCents(AccountType type) {
+        return totals.sum[type.ordinal()];
+    }
+
+    public long customers() {
+        return totals.customers;
+    }
+
+    /** Largest balances first. */
+    public List<Ranked> topAccounts() {
+        return totals.topAccounts.sorted();
+    }
+
+    /** Largest customer totals first. */
+    public List<Ranked> topCustomers() {
+        return totals.topCustomers.sorted();
+    }
+
+    /** Accounts per balance bucket; see {@link #toString()} for the bucket labels. */
+    public long[] distribution() {
+        return totals.buckets.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Accounts %,d  customers %,d  total %s  (%.1f s)%n",
+                accounts(), customers(), dollars(totalCents()), elapsedNanos / 1e9));
+        for (AccountType type : TYPES) {
+            sb.append(String.format("  %-10s %,14d accounts  %s%n", type, accounts(type), dollars(totalCents(type))));
+        }
+        sb.append("Balances\n");
+        for (int b = 0; b < BUCKET_LABELS.length; b++) {
+            sb.append(String.format("  %-14s %,14d%n", BUCKET_LABELS[b], totals.buckets[b]));
+        }
+        sb.append("Top accounts\n");
+        for (Ranked r : topAccounts()) {
+            sb.append(String.format("  #%-12d %s%n", r.number, dollars(r.cents)));
+        }
+        sb.append("Top customers\n");
+        for (Ranked r : topCustomers()) {
+            sb.append(String.format("  %-13d %s%n", r.number, dollars(r.cents)));
+        }
+        return sb.toString();
+    }
+
+    private static String dollars(long cents) {
+        return String.format("%s$%,d.%02d", cents < 0 ? "-" : "", Math.abs(cents / 100), Math.abs(cents % 100));
+    }
+
+    /** Prints the report for the production database. */
+    public static void main(String[] args) throws SQLException {
+        System.out.print(of(new OracleDBUtil()));
+    }
+
+    // ---- accumulation --------------------------------------------------------------
+
+    /** Single-threaded accumulator; accounts must arrive grouped by customer. */
+    private static final class Totals implements ConcurrentLedger.AccountVisitor {
+        final long[] count = new long[TYPES.length];
+        final long[] sum = new long[TYPES.length];
+        final long[] buckets = new long[BUCKET_FLOORS.length];
+        final TopN topAccounts;
+        final TopN topCustomers;
+        long customers;
+
+        private boolean inCustomer;
+        private int customer;
+        private long customerCents;
+
+        Totals(int topN) {
+            topAccounts = new TopN(topN);
+            topCustomers = new TopN(topN);
+        }
+
+        @Override
+        public void visit(int customerNumber, int accountNumber, AccountType type, long cents) {
+            if (!inCustomer || customerNumber != customer) {
+                finish();
+                inCustomer = true;
+                customer = customerNumber;
+            }
+            customerCents += cents;
+            count[type.ordinal()]++;
+            sum[type.ordinal()] += cents;
+            buckets[bucket(cents)]++;
+            topAccounts.offer(accountNumber, cents);
+        }
+
+        /** Closes the current customer's total. */
+        Totals finish() {
+            if (inCustomer) {
+                customers++;
+                topCustomers.offer(customer, customerCents);
+                inCustomer = false;
+                customerCents = 0;
+            }
+            return this;
+        }
+
+        /** Partitions never share a customer, so merging is plain addition. */
+        Totals merge(Totals other) {
+            for (int i = 0; i < count.length; i++) {
+                count[i] += other.count[i];
+                sum[i] += other.sum[i];
+            }
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] += other.buckets[i];
+            }
+            customers += other.customers;
+            topAccounts.addAll(other.topAccounts);
+            topCustomers.addAll(other.topCustomers);
+            return this;
+        }
+
+        private static int bucket(long cents) {
+            int b = BUCKET_FLOORS.length - 1;
+            while (cents < BUCKET_FLOORS[b]) {
+                b--;
+            }
+            return b;
+        }
+    }
+
+    /** The {@code n} largest values seen, as a primitive min-heap. */
+    private static final class TopN {
+        private final long[] values;
+        private final int[] numbers;
+        private int size;
+
+        TopN(int n) {
+            values = new long[Math.max(0, n)];
+            numbers = new int[values.length];
+        }
+
+        void offer(int number, long value) {
+            if (size < values.length) {
+                int i = size++;
+                values[i] = value;
+                numbers[i] = number;
+                siftUp(i);
+            } else if (size > 0 && value > values[0]) {
+                values[0] = value;
+                numbers[0] = number;
+                siftDown(0);
+            }
+        }
+
+        void addAll(TopN other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.numbers[i], other.values[i]);
+            }
+        }
+
+        List<Ranked> sorted() {
+            List<Ranked> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(new Ranked(numbers[i], values[i]));
+            }
+            list.sort((a, b) -> Long.compare(b.cents, a.cents));
+            return list;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (values[parent] <= values[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && values[left] < values[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && values[right] < values[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long v = values[a];
+            values[a] = values[b];
+            values[b] = v;
+            int n = numbers[a];
+            numbers[a] = numbers[b];
+            numbers[b] = n;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package org.example;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 public interface AccountRepository {
     List<Account> findAllByCustomer(int customerNumber);
@@ -8,7 +10,16 @@ public interface AccountRepository {
     /** Only returns the account if it belongs to the given customer. */
     Account findOneForCustomer(int customerNumber, int accountNumber);
 
-    /** Persist balance (and any other mutable fields) for this account. */
+    /** Any customer's account, looked up by number alone (e.g. a payee); null if none. */
+    Account findByAccountNumber(int accountNumber);
+
+    /**
+     * Persist balance (and any other mutable fields) for this account. Compare-and-set: the
+     * write only happens if the stored account still has {@link Account#getVersion()}, after
+     * which the account carries the new version. Every store versions its accounts (the
+     * JDBC one in ACCOUNTVERSION), and every balance change bumps the version.
+     * @throws AccountConflictException if the account changed since it was read
+     */
     void save(Account account);
 
     /**
@@ -18,6 +29,97 @@ public interface AccountRepository {
      */
     int create(int customerNumber, AccountType type, long initialCents);
 
-    // OPTIONAL (for cross-customer transfers later):
-    // Account findByAccountNumber(int accountNumber);
+    /**
+     * Open several accounts in one call (bulk onboarding). Implementations may write them
+     * as a single batch; by default each one goes through {@link #create}.
+     * @return the allocated account numbers, in the same order as {@code batch}
+     */
+    default int[] createAll(List<NewAccount> batch) {
+        int[] numbers = new int[batch.size()];
+        for (int i = 0; i < numbers.length; i++) {
+            NewAccount a = batch.get(i);
+            numbers[i] = create(a.customerNumber, a.type, a.initialCents);
+        }
+        return numbers;
+    }
+
+    /**
+     * Atomically add to an account's balance (no read-modify-write in the caller).
+     * @return the new balance in cents
+     * @throws IllegalArgumentException if the account does not belong to the customer
+     */
+    long deposit(int customerNumber, int accountNumber, long cents);
+
+    /**
+     * Atomically subtract from an account's balance, only if the funds are there.
+     * @return the new balance in cents
+     * @throws IllegalArgumentException if the account does not belong to the customer
+     * @throws IllegalStateException if the balance is lower than {@code cents}
+     */
+    long withdraw(int customerNumber, int accountNumber, long cents);
+
+    /**
+     * Atomically move money between two accounts of the same customer: either both
+     * balances change or neither does.
+     * @throws IllegalArgumentException if either account does not belong to the customer
+     * @throws IllegalStateException if the source balance is lower than {@code cents}
+     */
+    AccountService.TransferResult transfer(int customerNumber, int fromAccount, int toAccount, long cents);
+
+    /**
+     * Like {@link #transfer}, but the destination may belong to any customer (peer
+     * payments). Only the source account is checked against {@code customerNumber}.
+     * @throws IllegalArgumentException if the source does not belong to the customer, or
+     *         the destination does not exist
+     * @throws IllegalStateException if the source balance is lower than {@code cents}
+     */
+    AccountService.TransferResult transferToAccount(int customerNumber, int fromAccount, int toAccount, long cents);
+
+    /**
+     * Deposit that the repository may batch with others and commit later (write-behind).
+     * The future completes once the deposit is durable, or fails with the same exceptions
+     * as {@link #deposit}. By default it is simply applied immediately.
+     */
+    default CompletableFuture<Void> depositDeferred(int customerNumber, int accountNumber, long cents) {
+        try {
+            deposit(customerNumber, accountNumber, cents);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    /**
+     * A page of an account's history, newest first: up to {@code limit} entries with an id
+     * below {@code beforeId}. Pass {@link Long#MAX_VALUE} for the first page and the id of
+     * the last entry received for the next one. Paging by key rather than by offset keeps
+     * every page equally cheap, however long the history is.
+     * <p>
+     * Empty if the account does not belong to the customer, or if this repository keeps
+     * no history (the default).
+     */
+    default List<AccountTransaction> history(int customerNumber, int accountNumber, long beforeId, int limit) {
+        return List.of();
+    }
+
+    /**
+     * True while the repository cannot reach its backing store normally (e.g. a database
+     * incident): reads may return last-known data and changes are rejected.
+     */
+    default boolean isDegraded() {
+        return false;
+    }
+
+    /** One account to open through {@link #createAll}. */
+    final class NewAccount {
+        public final int customerNumber;
+        public final AccountType type;
+        public final long initialCents;
+
+        public NewAccount(int customerNumber, AccountType type, long initialCents) {
+            this.customerNumber = customerNumber;
+            this.type = Objects.requireNonNull(type, "type is required");
+            this.initialCents = initialCents;
+        }
+    }
 }
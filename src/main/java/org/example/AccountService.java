@@ -1,12 +1,12 @@
 package org.example;
 
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * AccountService: business logic boundary for account operations.
  * - Validates inputs (positive/finite amounts, ownership, same-account, etc.)
- * - Loads the freshest state from the repository
- * - Applies domain changes (using Account methods)
+ * - Applies each change atomically in the repository
  * - Persists immediately (no "save on logout")
  */
 public interface AccountService {
@@ -20,22 +20,82 @@ public interface AccountService {
     /** Transfer money between two accounts (same customer). Returns both new balances. */
     TransferResult transfer(int customerNumber, int fromAccount, int toAccount, double amount);
 
+    /**
+     * Transfer from one of the customer's accounts to an account of any customer.
+     * Returns both new balances; don't show the destination's to the payer.
+     */
+    TransferResult transferToAccount(int customerNumber, int fromAccount, int toAccount, double amount);
+
+    /**
+     * Deposit for bulk feeds that don't need the new balance back. It may be batched with
+     * other deposits; the future completes once the deposit is committed.
+     */
+    CompletableFuture<Void> depositDeferred(int customerNumber, int accountNumber, double amount);
+
+    /** The standard service: validates as the ATM does and applies each change in {@code accounts}. */
+    static AccountService of(AccountRepository accounts) {
+        return new SimpleAccountService(accounts);
+    }
+
+    // ---- cents API: exact integer arithmetic end to end --------------------------------
+    // SimpleAccountService implements these natively (and the dollar methods on top of
+    // them); the defaults only bridge implementations that know dollars alone.
+
+    /** Deposit {@code cents} (> 0). Returns the new balance in cents. */
+    default long depositCents(int customerNumber, int accountNumber, long cents) {
+        return Math.round(deposit(customerNumber, accountNumber, cents / 100.0) * 100.0);
+    }
+
+    /** Withdraw {@code cents} (> 0). Returns the new balance in cents. */
+    default long withdrawCents(int customerNumber, int accountNumber, long cents) {
+        return Math.round(withdraw(customerNumber, accountNumber, cents / 100.0) * 100.0);
+    }
+
+    /** Transfer {@code cents} (> 0) between two accounts of the same customer. */
+    default TransferResult transferCents(int customerNumber, int fromAccount, int toAccount, long cents) {
+        return transfer(customerNumber, fromAccount, toAccount, cents / 100.0);
+    }
+
+    /** Transfer {@code cents} (> 0) to an account of any customer. */
+    default TransferResult transferToAccountCents(int customerNumber, int fromAccount, int toAccount, long cents) {
+        return transferToAccount(customerNumber, fromAccount, toAccount, cents / 100.0);
+    }
 
     final class TransferResult {
         public final double fromNewBalance;
         public final double toNewBalance;
+        public final long fromNewBalanceCents;
+        public final long toNewBalanceCents;
+        /** Owner of the destination account, or 0 if the repository did not say. */
+        public final int toCustomerNumber;
 
         public TransferResult(double fromNewBalance, double toNewBalance) {
-            this.fromNewBalance = fromNewBalance;
-            this.toNewBalance = toNewBalance;
+            this(Math.round(fromNewBalance * 100.0), Math.round(toNewBalance * 100.0), 0);
+        }
+
+        private TransferResult(long fromNewBalanceCents, long toNewBalanceCents, int toCustomerNumber) {
+            this.fromNewBalanceCents = fromNewBalanceCents;
+            this.toCustomerNumber = toCustomerNumber;
+            this.toNewBalanceCents = toNewBalanceCents;
+            this.fromNewBalance = fromNewBalanceCents / 100.0;
+            this.toNewBalance = toNewBalanceCents / 100.0;
+        }
+
+        public static TransferResult ofCents(long fromNewBalanceCents, long toNewBalanceCents) {
+            return new TransferResult(fromNewBalanceCents, toNewBalanceCents, 0);
+        }
+
+        public static TransferResult ofCents(long fromNewBalanceCents, long toNewBalanceCents, int toCustomerNumber) {
+            return new TransferResult(fromNewBalanceCents, toNewBalanceCents, toCustomerNumber);
         }
     }
 }
 
 /**
  * SimpleAccountService: concrete implementation backed by an AccountRepository.
- * - Keeps transactions simple (one repo save per mutation).
- * - Uses the domain object (Account) for the actual arithmetic & invariants.
+ * - Validates amounts and converts them to cents.
+ * - Delegates each mutation to a single atomic repository operation, so there is
+ *   no read-modify-write race between concurrent sessions.
  */
 final class SimpleAccountService implements AccountService {
 
@@ -47,85 +107,81 @@ final class SimpleAccountService implements AccountService {
 
     @Override
     public double deposit(int customerNumber, int accountNumber, double amount) {
-        requirePositiveFinite(amount);
-
-        Account a = accounts.findOneForCustomer(customerNumber, accountNumber);
-        if (a == null) {
-            throw new IllegalArgumentException("Account not found for this customer");
-        }
+        return depositCents(customerNumber, accountNumber, toPositiveCents(amount)) / 100.0;
+    }
 
-        boolean ok = a.deposit(amount);
-        if (!ok) {
-            throw new IllegalArgumentException("Deposit rejected (invalid amount)");
-        }
+    @Override
+    public double withdraw(int customerNumber, int accountNumber, double amount) {
+        return withdrawCents(customerNumber, accountNumber, toPositiveCents(amount)) / 100.0;
+    }
 
-        accounts.save(a);
-        return a.getAccountBalance();
+    @Override
+    public TransferResult transfer(int customerNumber, int fromAccount, int toAccount, double amount) {
+        return transferCents(customerNumber, fromAccount, toAccount, toPositiveCents(amount));
     }
 
     @Override
-    public double withdraw(int customerNumber, int accountNumber, double amount) {
-        requirePositiveFinite(amount);
+    public TransferResult transferToAccount(int customerNumber, int fromAccount, int toAccount, double amount) {
+        return transferToAccountCents(customerNumber, fromAccount, toAccount, toPositiveCents(amount));
+    }
 
-        Account a = accounts.findOneForCustomer(customerNumber, accountNumber);
-        if (a == null) {
-            throw new IllegalArgumentException("Account not found for this customer");
-        }
+    @Override
+    public CompletableFuture<Void> depositDeferred(int customerNumber, int accountNumber, double amount) {
+        long cents = toPositiveCents(amount);
+        return accounts.depositDeferred(customerNumber, accountNumber, cents);
+    }
 
-        boolean ok = a.withdraw(amount);
-        if (!ok) {
-            throw new IllegalStateException("Insufficient funds or invalid amount");
-        }
+    @Override
+    public long depositCents(int customerNumber, int accountNumber, long cents) {
+        return accounts.deposit(customerNumber, accountNumber, requirePositive(cents));
+    }
 
-        accounts.save(a);
-        return a.getAccountBalance();
+    @Override
+    public long withdrawCents(int customerNumber, int accountNumber, long cents) {
+        return accounts.withdraw(customerNumber, accountNumber, requirePositive(cents));
     }
 
     @Override
-    public TransferResult transfer(int customerNumber, int fromAccount, int toAccount, double amount) {
-        requirePositiveFinite(amount);
+    public TransferResult transferCents(int customerNumber, int fromAccount, int toAccount, long cents) {
+        requirePositive(cents);
         if (fromAccount == toAccount) {
             throw new IllegalArgumentException("Cannot transfer to the same account");
         }
 
-        // same-customer transfer (simple, safe for your current project)
-        Account from = accounts.findOneForCustomer(customerNumber, fromAccount);
-        if (from == null) {
-            throw new IllegalArgumentException("Source account not found for this customer");
-        }
-
-        Account to = accounts.findOneForCustomer(customerNumber, toAccount);
-        if (to == null) {
-            throw new IllegalArgumentException("Destination account not found for this customer");
-        }
+        // same-customer transfer; both legs commit together or not at all
+        return accounts.transfer(customerNumber, fromAccount, toAccount, cents);
+    }
 
-        // Two-step with compensation (since we aren't opening a DB transaction here)
-        if (!from.withdraw(amount)) {
-            throw new IllegalStateException("Insufficient funds");
-        }
-        if (!to.deposit(amount)) {
-            // roll back in-memory if deposit failed for some reason
-            from.deposit(amount);
-            throw new IllegalStateException("Destination rejected the deposit");
+    @Override
+    public TransferResult transferToAccountCents(int customerNumber, int fromAccount, int toAccount, long cents) {
+        requirePositive(cents);
+        if (fromAccount == toAccount) {
+            throw new IllegalArgumentException("Cannot transfer to the same account");
         }
-
-        // Persist both updated accounts
-        accounts.save(from);
-        accounts.save(to);
-
-        return new TransferResult(from.getAccountBalance(), to.getAccountBalance());
+        return accounts.transferToAccount(customerNumber, fromAccount, toAccount, cents);
     }
 
-
     // ---- helpers -------------------------------------------------------------------
 
-    private static void requirePositiveFinite(double v) {
+    private static long toPositiveCents(double v) {
         if (v <= 0.0 || Double.isNaN(v) || Double.isInfinite(v)) {
             throw new IllegalArgumentException("Amount must be positive and finite");
         }
+        long cents = toCents(v);
+        if (cents <= 0) {
+            throw new IllegalArgumentException("Amount must be at least one cent");
+        }
+        return cents;
     }
 
     private static long toCents(double d) {
         return Math.round(d * 100.0);
     }
+
+    private static long requirePositive(long cents) {
+        if (cents <= 0) {
+            throw new IllegalArgumentException("Amount must be at least one cent");
+        }
+        return cents;
+    }
 }
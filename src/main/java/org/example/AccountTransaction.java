@@ -0,0 +1,33 @@
+package org.example;
+
+import java.util.Objects;
+
+/**
+ * One completed balance change, as shown on a mini-statement. Amounts are positive cents;
+ * {@link #kind} says which way the money went.
+ */
+public final class AccountTransaction {
+
+    public enum Kind { DEPOSIT, WITHDRAWAL, TRANSFER_IN, TRANSFER_OUT, INTEREST }
+
+    /** Increases with every entry of the same account; the keyset cursor for paging. */
+    public final long id;
+    public final int accountNumber;
+    public final Kind kind;
+    public final long amountCents;
+    public final long balanceAfterCents;
+    /** The other account of a transfer, 0 otherwise. */
+    public final int counterpartyAccount;
+    public final long timestampMillis;
+
+    public AccountTransaction(long id, int accountNumber, Kind kind, long amountCents,
+                              long balanceAfterCents, int counterpartyAccount, long timestampMillis) {
+        this.id = id;
+        this.accountNumber = accountNumber;
+        this.kind = Objects.requireNonNull(kind, "kind is required");
+        this.amountCents = amountCents;
+        this.balanceAfterCents = balanceAfterCents;
+        this.counterpartyAccount = counterpartyAccount;
+        this.timestampMillis = timestampMillis;
+    }
+}
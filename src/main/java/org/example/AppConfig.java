@@ -1,9 +1,11 @@
 package org.example;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Central place to wire dependencies.
@@ -13,104 +15,171 @@ public final class AppConfig {
     private AppConfig() {
     }
 
+    /**
+     * Opens one ATM session on a pair of terminal streams. Every session from the same
+     * factory shares the repositories, service and connection pool; only the menu state
+     * (who is logged in) is per session.
+     */
+    @FunctionalInterface
+    public interface SessionFactory {
+        ATM open(InputStream in, PrintStream out);
+    }
+
     /**
      * Build an ATM wired with in-memory repositories and seed data (great for dev/testing).
      */
     public static ATM devATM() {
-        var auth = new InMemoryAuthRepo()
-                .seed(952141, 191904)
-                .seed(989947, 717976);
-
-        var accounts = new InMemoryAccountRepo();
-        accounts.seed(new Account(952141, 1001, AccountType.CHECKING, 500.00));
-        accounts.seed(new Account(952141, 1002, AccountType.SAVINGS, 1200.00));
-        accounts.seed(new Account(989947, 2001, AccountType.CHECKING, 250.00));
-
-        AccountService service = new SimpleAccountService(accounts);
-
-        return new ATM(auth, accounts, service);
+        return devSessions().open(System.in, System.out);
     }
 
     /**
      * Build an ATM wired with JDBC repositories (use in production).
      */
     public static ATM prodATM() throws SQLException {
-        OracleDBUtil dbUtil = new OracleDBUtil();
+        return prodSessions().open(System.in, System.out);
+    }
 
-        var auth = new JdbcAuthenticationRepository(dbUtil);
-        var accounts = new JdbcAccountRepository(dbUtil);
-        AccountService service = new org.example.SimpleAccountService(accounts);
+    /**
+     * In-memory wiring with seed data, shared by every session it opens.
+     */
+    public static SessionFactory devSessions() {
+        OptionMenu.AuthenticationRepository auth = new InMemoryAuthRepo()
+                .seed(952141, 191904)
+                .seed(989947, 717976);
 
-        return new ATM(auth, accounts, service);
-    }
+        List<Account> seedAccounts = List.of(
+                new Account(952141, 1001, AccountType.CHECKING, 500.00),
+                new Account(952141, 1002, AccountType.SAVINGS, 1200.00),
+                new Account(989947, 2001, AccountType.CHECKING, 250.00));
+
+        AccountRepository accounts;
+        JournaledAccountRepository journaled = openJournal();
+        if (journaled != null) {
+            // balances survive restarts; only seed a brand-new journal
+            if (journaled.size() == 0) {
+                seedAccounts.forEach(journaled::save);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(journaled::close, "account-journal-close"));
+            accounts = journaled;
+        } else {
+            var ledger = new ConcurrentLedger();
+            seedAccounts.forEach(ledger::seed);
+            accounts = ledger;
+        }
 
-    // ==================== In-memory repositories ====================
+        return inMemoryWiring(auth, accounts).sessions();
+    }
 
     /**
-     * In-memory Authentication (PINs as plain ints for demo).
+     * The pieces every session is built from. Tools (e.g. {@link LoadGenerator}) can wrap
+     * one of them before opening sessions.
      */
-    static class InMemoryAuthRepo implements OptionMenu.AuthenticationRepository {
-        private final Map<Integer, Integer> pins = new ConcurrentHashMap<>();
+    static final class Wiring {
+        final OptionMenu.AuthenticationRepository auth;
+        final AccountRepository accounts;
+        final AccountService service;
+
+        Wiring(OptionMenu.AuthenticationRepository auth, AccountRepository accounts, AccountService service) {
+            this.auth = auth;
+            this.accounts = accounts;
+            this.service = service;
+        }
 
-        InMemoryAuthRepo seed(int customer, int pin) {
-            pins.put(customer, pin);
-            return this;
+        SessionFactory sessions() {
+            return (in, out) -> new ATM(auth, accounts, service, in, out);
         }
+    }
 
-        @Override
-        public boolean verify(int customerNumber, int pin) {
-            return Objects.equals(pins.get(customerNumber), pin);
+    /** Service and instrumentation on top of in-memory repositories. */
+    static Wiring inMemoryWiring(OptionMenu.AuthenticationRepository auth, AccountRepository accounts) {
+        Metrics metrics = Metrics.fromEnv();
+        if (metrics != null) {
+            auth = new InstrumentedAuthRepository(auth, metrics);
+            accounts = new InstrumentedAccountRepository(accounts, metrics, "ledger");
+        }
+        AccountService service = AccountService.of(accounts);
+        if (metrics != null) {
+            service = new InstrumentedAccountService(service, metrics);
+        }
+        return new Wiring(auth, accounts, service);
+    }
+
+    /** Journaled ledger in ATM_JOURNAL_DIR, or null when that is not set. */
+    private static JournaledAccountRepository openJournal() {
+        try {
+            return JournaledAccountRepository.fromEnv();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not open the account journal", ex);
         }
     }
 
     /**
-     * In-memory Account repo (thread-safe maps).
+     * JDBC wiring (one pool for the whole process), shared by every session it opens.
      */
-    static class InMemoryAccountRepo implements AccountRepository {
-        private final Map<Integer, Account> byNo = new ConcurrentHashMap<>();
-        private final Map<Integer, Set<Integer>> byCustomer = new ConcurrentHashMap<>();
-        private final AtomicInteger nextAccountNumber = new AtomicInteger(1000);
-
-        void seed(Account account) {
-            save(account);
-            nextAccountNumber.accumulateAndGet(account.getAccountNumber() + 1, Math::max);
+    public static SessionFactory prodSessions() throws SQLException {
+        return prodWiring().sessions();
+    }
+
+    static Wiring prodWiring() throws SQLException {
+        var hotSql = new ArrayList<String>(JdbcAuthenticationRepository.hotSql());
+        hotSql.addAll(JdbcAccountRepository.hotSql());
+        // driver loading, pool creation and warm-up overlap with the login prompt
+        OracleDBUtil dbUtil = OracleDBUtil.startInBackground(hotSql);
+        Metrics metrics = Metrics.fromEnv();
+        if (metrics != null) {
+            dbUtil.recordPoolWaits(metrics);
         }
 
-        @Override
-        public List<Account> findAllByCustomer(int customerNumber) {
-            var nos = byCustomer.getOrDefault(customerNumber, Set.of());
-            var list = new ArrayList<Account>(nos.size());
-            for (int n : nos) {
-                Account a = byNo.get(n);
-                if (a != null) {
-                    list.add(a);
-                }
-            }
-            return list;
+        OptionMenu.AuthenticationRepository auth = new JdbcAuthenticationRepository(dbUtil);
+        var writeBehind = WriteBehindBalanceWriter.fromEnv(dbUtil);
+        if (writeBehind != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(writeBehind::close, "write-behind-flush"));
         }
 
-        @Override
-        public Account findOneForCustomer(int customerNumber, int accountNumber) {
-            Account account = byNo.get(accountNumber);
-            return (account != null && account.getCustomerNumber() == customerNumber) ? account : null;
+        AccountRepository jdbc = new JdbcAccountRepository(dbUtil, writeBehind);
+        if (metrics != null) {
+            // timed below the cache, so jdbc.* is one SQL statement (plus pool wait) per call
+            auth = new InstrumentedAuthRepository(auth, metrics);
+            jdbc = new InstrumentedAccountRepository(jdbc, metrics, "jdbc");
         }
 
-        @Override
-        public void save(Account account) {
-            byNo.put(account.getAccountNumber(), account);
-            byCustomer.computeIfAbsent(account.getCustomerNumber(), k -> new LinkedHashSet<>())
-                    .add(account.getAccountNumber());
+        // deadlines and a circuit breaker, so a stalled database fails calls fast
+        jdbc = ResilientAccountRepository.fromEnv(jdbc);
+
+        // menus re-list accounts on every choice; serve those from memory (and the last
+        // known lists while the breaker is open)
+        var accounts = CachingAccountRepository.fromEnv(jdbc);
+        AccountService service = AccountService.of(accounts);
+        if (metrics != null) {
+            service = new InstrumentedAccountService(service, metrics);
         }
 
-        @Override
-        public int create(int customerNumber, AccountType type, long initialCents) {
-            int accountNumber = nextAccountNumber.getAndIncrement();
-            Account account = new Account(customerNumber, accountNumber, type, initialCents / 100.0);
-            save(account);
-            return accountNumber;
+        return new Wiring(auth, accounts, service);
+    }
 
+    // ==================== In-memory repositories ====================
 
+    /**
+     * In-memory Authentication (PINs as plain ints for demo).
+     */
+    static class InMemoryAuthRepo implements OptionMenu.AuthenticationRepository {
+        private static final int NO_PIN = -1;
+
+        // unboxed customer -> PIN; writes synchronized, lookups lock-free
+        private final IntIntMap pins = new IntIntMap(16, NO_PIN);
 
+        synchronized InMemoryAuthRepo seed(int customer, int pin) {
+            if (pin < 0) {
+                throw new IllegalArgumentException("PIN cannot be negative");
+            }
+            pins.put(customer, pin);
+            return this;
+        }
+
+        @Override
+        public boolean verify(int customerNumber, int pin) {
+            int expected = pins.get(customerNumber);
+            return expected != NO_PIN && expected == pin;
         }
     }
 }
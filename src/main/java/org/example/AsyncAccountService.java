@@ -0,0 +1,145 @@
+package org.example;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous front for an {@link AccountService}: every call returns a CompletableFuture
+ * once admitted and the blocking work runs on a fixed pool of worker threads.
+ * <ul>
+ *   <li>Pipelining: a caller can issue several operations without waiting. Operations that
+ *       touch the same account run in the order they were submitted (a transfer waits for
+ *       earlier work on both of its accounts); unrelated accounts run in parallel.</li>
+ *   <li>Backpressure: at most {@code maxInFlight} operations are queued or running. Past
+ *       that, the calling thread blocks for up to {@code admissionTimeout} waiting for room
+ *       and then fails the future with {@link RejectedExecutionException}; pass a zero
+ *       timeout to fail fast instead.</li>
+ * </ul>
+ */
+public final class AsyncAccountService implements AutoCloseable {
+
+    private final AccountService delegate;
+    private final ExecutorService workers;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final long admissionTimeoutNanos;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    // last submitted operation per account number; guarded by itself
+    private final Map<Integer, CompletableFuture<Void>> tails = new HashMap<>();
+
+    public AsyncAccountService(AccountService delegate, int threads, int maxInFlight,
+                               long admissionTimeout, TimeUnit unit) {
+        this.delegate = Objects.requireNonNull(delegate, "account service required");
+        if (threads <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("threads and maxInFlight must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.admissionTimeoutNanos = unit.toNanos(admissionTimeout);
+        AtomicInteger n = new AtomicInteger();
+        // the semaphore bounds the queue, so it never grows past maxInFlight
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "account-async-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    public CompletableFuture<Double> deposit(int customerNumber, int accountNumber, double amount) {
+        return submit(accountNumber, accountNumber,
+                () -> delegate.deposit(customerNumber, accountNumber, amount));
+    }
+
+    public CompletableFuture<Double> withdraw(int customerNumber, int accountNumber, double amount) {
+        return submit(accountNumber, accountNumber,
+                () -> delegate.withdraw(customerNumber, accountNumber, amount));
+    }
+
+    public CompletableFuture<AccountService.TransferResult> transfer(int customerNumber, int fromAccount,
+                                                                     int toAccount, double amount) {
+        return submit(fromAccount, toAccount,
+                () -> delegate.transfer(customerNumber, fromAccount, toAccount, amount));
+    }
+
+    public CompletableFuture<AccountService.TransferResult> transferToAccount(int customerNumber, int fromAccount,
+                                                                              int toAccount, double amount) {
+        return submit(fromAccount, toAccount,
+                () -> delegate.transferToAccount(customerNumber, fromAccount, toAccount, amount));
+    }
+
+    /** Operations accepted but not yet finished. */
+    public int inFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    private <T> CompletableFuture<T> submit(int accountA, int accountB, Supplier<T> operation) {
+        try {
+            if (!inFlight.tryAcquire(admissionTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                return CompletableFuture.failedFuture(
+                        new RejectedExecutionException("Too many account operations in flight"));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(ex);
+        }
+        if (closed.get()) {
+            inFlight.release();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Account service is closed"));
+        }
+
+        CompletableFuture<T> result;
+        CompletableFuture<Void> done;
+        // Both accounts' tails must be read and replaced in one step, or two transfers in
+        // opposite directions could each end up waiting for the other.
+        synchronized (tails) {
+            CompletableFuture<Void> after = tails.getOrDefault(accountA, CompletableFuture.completedFuture(null));
+            if (accountB != accountA) {
+                CompletableFuture<Void> b = tails.get(accountB);
+                if (b != null) {
+                    after = CompletableFuture.allOf(after, b);
+                }
+            }
+            result = after.thenApplyAsync(ignored -> operation.get(), workers);
+            // successors wait for this one to finish, whether it succeeded or not
+            done = result.handle((value, error) -> null);
+            tails.put(accountA, done);
+            tails.put(accountB, done);
+        }
+        done.whenComplete((ignored, error) -> {
+            synchronized (tails) {
+                tails.remove(accountA, done);
+                tails.remove(accountB, done);
+            }
+            inFlight.release();
+        });
+        return result;
+    }
+
+    /**
+     * Stops accepting operations, waits for every accepted one to finish (including those
+     * still waiting on an earlier operation of the same account), then stops the workers.
+     * Later calls return at once.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        // each accepted operation holds a permit until it has finished
+        inFlight.acquireUninterruptibly(maxInFlight);
+        workers.shutdown();
+    }
+}
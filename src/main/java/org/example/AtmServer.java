@@ -0,0 +1,124 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves many ATM terminals from one process: each TCP connection on localhost gets its
+ * own OptionMenu session on its own virtual thread, and all sessions share the services
+ * (and database pool) of one {@link AppConfig.SessionFactory}.
+ * <p>
+ * Usage: {@code AtmServer [--dev] [port]} (default port 9090). Connect with e.g.
+ * {@code nc localhost 9090}.
+ */
+public final class AtmServer implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(AtmServer.class.getName());
+
+    public static final int DEFAULT_PORT = 9090;
+    static final String ENV_MAX_SESSIONS = "ATM_SERVER_MAX_SESSIONS";
+
+    private final AppConfig.SessionFactory sessions;
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessionThreads = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore sessionSlots;
+
+    /** Binds to the loopback interface; port 0 picks a free port (see {@link #port()}). */
+    public AtmServer(AppConfig.SessionFactory sessions, int port, int maxSessions) throws IOException {
+        this.sessions = Objects.requireNonNull(sessions, "session factory required");
+        this.sessionSlots = new Semaphore(maxSessions);
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+    }
+
+    public static void main(String[] args) throws IOException, SQLException {
+        boolean dev = false;
+        int port = DEFAULT_PORT;
+        for (String arg : args) {
+            if (arg.equals("--dev")) {
+                dev = true;
+            } else {
+                port = Integer.parseInt(arg);
+            }
+        }
+
+        AppConfig.SessionFactory sessions = dev ? AppConfig.devSessions() : AppConfig.prodSessions();
+        AtmServer server = new AtmServer(sessions, port, EnvConfig.integer(ENV_MAX_SESSIONS, 10_000));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "atm-server-shutdown"));
+        logger.info("ATM server listening on localhost:" + server.port());
+        server.serve();
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Accepts connections until {@link #close()} is called. */
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException closed) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw closed;
+            }
+            if (!sessionSlots.tryAcquire()) {
+                reject(socket);
+                continue;
+            }
+            sessionThreads.execute(() -> {
+                try {
+                    runSession(socket);
+                } finally {
+                    sessionSlots.release();
+                }
+            });
+        }
+    }
+
+    private void runSession(Socket socket) {
+        try (socket) {
+            PrintStream out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            ATM atm = sessions.open(socket.getInputStream(), out);
+            atm.getLogin();
+        } catch (NoSuchElementException hungUp) {
+            // the terminal closed its connection mid-session
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.WARNING, "ATM session ended with an error", ex);
+        }
+    }
+
+    private static void reject(Socket socket) {
+        try (socket) {
+            PrintStream out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            out.println("All terminals are busy. Please try again shortly.");
+        } catch (IOException ignored) {
+            // nothing more we can tell this client
+        }
+    }
+
+    /** Stops accepting connections; sessions already running finish on their own. */
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException ex) {
+            logger.log(Level.FINE, "Error closing server socket", ex);
+        }
+        sessionThreads.shutdown();
+    }
+}
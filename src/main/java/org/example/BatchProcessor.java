@@ -0,0 +1,334 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless batch mode: applies a file of operations through {@link AccountService}
+ * without the interactive menu, and writes one status line per input line.
+ * <pre>
+ *   customerNumber,operation,account[,toAccount],cents
+ *   952141,DEPOSIT,1001,50000
+ *   952141,withdraw,1001,2000
+ *   952141,TRANSFER,1001,1002,1500
+ *   952141,PAY,1001,2417,700
+ * </pre>
+ * TRANSFER is between two accounts of the same customer, PAY to an account of any
+ * customer. A header line is optional; blank lines are skipped.
+ * <p>
+ * The file is read in chunks of {@code chunkLines}. Each chunk is split into partitions by
+ * the first account of every line, and the partitions run in parallel, each in file order,
+ * so lines naming the same first account are applied in the order they appear. The credit
+ * side of a transfer is atomic but not ordered against the destination's own lines of the
+ * same chunk. Results are written in input order:
+ * <pre>
+ *   lineNo,OK,newBalanceCents        (the first account's balance)
+ *   lineNo,INVALID|REJECTED|DECLINED|FAILED,message
+ * </pre>
+ * A message containing a comma, double quote or line break is quoted as in RFC 4180
+ * ({@code "..."} with inner quotes doubled), so every result is one three-field record.
+ * Usage: {@code BatchProcessor <operations.csv> <results.csv>}; ATM_BATCH_PARALLELISM
+ * (default: all cores) and ATM_BATCH_CHUNK_LINES (100000).
+ */
+public final class BatchProcessor {
+
+    static final String ENV_PARALLELISM = "ATM_BATCH_PARALLELISM";
+    static final String ENV_CHUNK_LINES = "ATM_BATCH_CHUNK_LINES";
+
+    private static final int IO_BUFFER = 1 << 16;
+
+    enum Operation { DEPOSIT, WITHDRAW, TRANSFER, PAY }
+
+    /** What a batch did. */
+    public static final class Result {
+        public final long lines;
+        public final long applied;
+        public final long failed;
+        public final long elapsedNanos;
+
+        Result(long lines, long applied, long failed, long elapsedNanos) {
+            this.lines = lines;
+            this.applied = applied;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double linesPerSecond() {
+            return elapsedNanos == 0 ? 0 : lines * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Batch: %,d lines, %,d applied, %,d failed in %.1f s (%,.0f lines/s)",
+                    lines, applied, failed, elapsedNanos / 1e9, linesPerSecond());
+        }
+    }
+
+    /** One parsed line. */
+    static final class Op {
+        final int customerNumber;
+        final Operation operation;
+        final int account;
+        final int toAccount;
+        final long cents;
+
+        Op(int customerNumber, Operation operation, int account, int toAccount, long cents) {
+            this.customerNumber = customerNumber;
+            this.operation = operation;
+            this.account = account;
+            this.toAccount = toAccount;
+            this.cents = cents;
+        }
+    }
+
+    private BatchProcessor() {
+    }
+
+    public static void main(String[] args) throws IOException, SQLException {
+        if (args.length < 2) {
+            System.err.println("Usage: BatchProcessor <operations.csv> <results.csv>");
+            System.exit(2);
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        int parallelism = Math.max(1, EnvConfig.integer(ENV_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+        int chunkLines = EnvConfig.integer(ENV_CHUNK_LINES, 100_000);
+
+        AccountService service = AppConfig.prodWiring().service;
+        Result result;
+        try (BufferedReader in = new BufferedReader(
+                     new InputStreamReader(Files.newInputStream(input), StandardCharsets.UTF_8), IO_BUFFER);
+             BufferedWriter out = new BufferedWriter(
+                     new OutputStreamWriter(Files.newOutputStream(output), StandardCharsets.UTF_8), IO_BUFFER)) {
+            result = process(in, out, service, parallelism, chunkLines);
+        }
+        System.out.println(result);
+        System.exit(result.failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * Applies every line of {@code in} to {@code accounts}, validated as at the ATM, and
+     * writes its status to {@code out}, using {@code parallelism} threads over chunks of
+     * {@code chunkLines} lines.
+     */
+    public static Result process(BufferedReader in, Writer out, AccountRepository accounts,
+                                 int parallelism, int chunkLines) throws IOException {
+        return process(in, out, AccountService.of(accounts), parallelism, chunkLines);
+    }
+
+    static Result process(BufferedReader in, Writer out, AccountService service,
+                          int parallelism, int chunkLines) throws IOException {
+        Objects.requireNonNull(service, "account service required");
+        if (parallelism <= 0 || chunkLines <= 0) {
+            throw new IllegalArgumentException("parallelism and chunkLines must be positive");
+        }
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "batch-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            long[] lineNos = new long[chunkLines];
+            Op[] ops = new Op[chunkLines];
+            String[] results = new String[chunkLines];
+            long lines = 0;
+            long applied = 0;
+            long lineNo = 0;
+            String line;
+            int n = 0;
+            while (true) {
+                line = in.readLine();
+                if (line != null) {
+                    lineNo++;
+                    if (line.isBlank() || (lineNo == 1 && isHeader(line))) {
+                        continue;
+                    }
+                    lineNos[n] = lineNo;
+                    try {
+                        ops[n] = parse(line);
+                        results[n] = null;
+                    } catch (IllegalArgumentException ex) {
+                        ops[n] = null;
+                        results[n] = "INVALID," + csvField(ex.getMessage());
+                    }
+                    n++;
+                }
+                if (n == chunkLines || (line == null && n > 0)) {
+                    applied += applyChunk(ops, results, n, service, pool, parallelism);
+                    for (int i = 0; i < n; i++) {
+                        out.write(Long.toString(lineNos[i]));
+                        out.write(',');
+                        out.write(results[i]);
+                        out.write('\n');
+                    }
+                    lines += n;
+                    n = 0;
+                }
+                if (line == null) {
+                    break;
+                }
+            }
+            out.flush();
+            return new Result(lines, applied, lines - applied, System.nanoTime() - start);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Runs the first {@code n} ops, one task per partition; returns how many succeeded. */
+    private static long applyChunk(Op[] ops, String[] results, int n, AccountService service,
+                                   ExecutorService pool, int parts) {
+        // counting sort of the line indexes by partition, keeping file order within each
+        int[] starts = new int[parts + 1];
+        for (int i = 0; i < n; i++) {
+            if (ops[i] != null) {
+                starts[partition(ops[i].account, parts) + 1]++;
+            }
+        }
+        for (int p = 0; p < parts; p++) {
+            starts[p + 1] += starts[p];
+        }
+        int[] order = new int[starts[parts]];
+        int[] fill = starts.clone();
+        for (int i = 0; i < n; i++) {
+            if (ops[i] != null) {
+                order[fill[partition(ops[i].account, parts)]++] = i;
+            }
+        }
+
+        List<Future<Integer>> futures = new ArrayList<>(parts);
+        for (int p = 0; p < parts; p++) {
+            int lo = starts[p];
+            int hi = starts[p + 1];
+            if (lo == hi) {
+                continue;
+            }
+            futures.add(pool.submit(() -> {
+                int ok = 0;
+                for (int k = lo; k < hi; k++) {
+                    int i = order[k];
+                    results[i] = apply(ops[i], service);
+                    if (results[i].startsWith("OK,")) {
+                        ok++;
+                    }
+                }
+                return ok;
+            }));
+        }
+        long ok = 0;
+        try {
+            for (Future<Integer> f : futures) {
+                ok += f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while applying batch", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Batch partition failed", ex.getCause());
+        }
+        return ok;
+    }
+
+    private static int partition(int account, int parts) {
+        return Math.floorMod(account * 0x9E3779B9, parts);
+    }
+
+    private static String apply(Op op, AccountService service) {
+        try {
+            long balance;
+            switch (op.operation) {
+                case DEPOSIT:
+                    balance = service.depositCents(op.customerNumber, op.account, op.cents);
+                    break;
+                case WITHDRAW:
+                    balance = service.withdrawCents(op.customerNumber, op.account, op.cents);
+                    break;
+                case TRANSFER:
+                    balance = service.transferCents(op.customerNumber, op.account, op.toAccount, op.cents)
+                            .fromNewBalanceCents;
+                    break;
+                case PAY:
+                    balance = service.transferToAccountCents(op.customerNumber, op.account, op.toAccount, op.cents)
+                            .fromNewBalanceCents;
+                    break;
+                default:
+                    throw new IllegalStateException("Unhandled operation " + op.operation);
+            }
+            return "OK," + balance;
+        } catch (IllegalArgumentException ex) {
+            return "REJECTED," + csvField(ex.getMessage());
+        } catch (DatabaseUnavailableException ex) {
+            return "FAILED," + csvField(ex.getMessage());
+        } catch (IllegalStateException ex) {
+            return "DECLINED," + csvField(ex.getMessage());
+        } catch (RuntimeException ex) {
+            return "FAILED," + csvField(ex.toString());
+        }
+    }
+
+    /** {@code message} as one CSV field, quoted only when it has to be. */
+    static String csvField(String message) {
+        if (message == null) {
+            return "";
+        }
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + message.replace("\"", "\"\"") + '"';
+            }
+        }
+        return message;
+    }
+
+    private static boolean isHeader(String line) {
+        return !Character.isDigit(line.stripLeading().charAt(0));
+    }
+
+    static Op parse(String line) {
+        String[] cols = line.split(",", -1);
+        if (cols.length != 4 && cols.length != 5) {
+            throw new IllegalArgumentException("expected customerNumber,operation,account[,toAccount],cents but got '"
+                    + line + "'");
+        }
+        Operation operation;
+        try {
+            operation = Operation.valueOf(cols[1].trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("unknown operation '" + cols[1].trim() + "'");
+        }
+        boolean twoAccounts = operation == Operation.TRANSFER || operation == Operation.PAY;
+        if (twoAccounts != (cols.length == 5)) {
+            throw new IllegalArgumentException(operation + " takes " + (twoAccounts ? "two accounts" : "one account"));
+        }
+        try {
+            int customer = Integer.parseInt(cols[0].trim());
+            int account = Integer.parseInt(cols[2].trim());
+            int toAccount = twoAccounts ? Integer.parseInt(cols[3].trim()) : 0;
+            long cents = Long.parseLong(cols[cols.length - 1].trim());
+            if (cents <= 0) {
+                throw new IllegalArgumentException("cents must be positive");
+            }
+            return new Op(customer, operation, account, toAccount, cents);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("not a number in '" + line + "'", ex);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Command-line bulk onboarding: streams a CSV of new accounts into the database.
+ * <pre>
+ *   customerNumber,accountType,initialCents
+ *   952141,CHECKING,50000
+ *   989947,savings,0
+ * </pre>
+ * A header line is optional. Rows are read one at a time and written in batches through
+ * {@link AccountRepository#createAll}, so memory stays flat however big the file is.
+ * Bad rows are reported with their line number and skipped.
+ * <p>
+ * Usage: {@code BulkAccountLoader <file.csv> [batchSize]}
+ */
+public final class BulkAccountLoader {
+
+    public static final int DEFAULT_BATCH_SIZE = 5_000;
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    /** What a load did. */
+    public static final class Result {
+        public final long created;
+        public final long rejected;
+
+        Result(long created, long rejected) {
+            this.created = created;
+            this.rejected = rejected;
+        }
+    }
+
+    private BulkAccountLoader() {
+    }
+
+    public static void main(String[] args) throws IOException, SQLException {
+        if (args.length < 1) {
+            System.err.println("Usage: BulkAccountLoader <file.csv> [batchSize]");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[0]);
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BATCH_SIZE;
+
+        var accounts = new JdbcAccountRepository(new OracleDBUtil());
+        long start = System.nanoTime();
+        Result result;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            result = load(in, accounts, batchSize);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Created %d accounts, rejected %d rows in %.1f s (%.0f accounts/s)%n",
+                result.created, result.rejected, seconds, result.created / Math.max(seconds, 1e-9));
+    }
+
+    /** Reads every row from {@code in} and creates the accounts in batches of {@code batchSize}. */
+    public static Result load(BufferedReader in, AccountRepository accounts, int batchSize) throws IOException {
+        Objects.requireNonNull(accounts, "accounts repository required");
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        List<AccountRepository.NewAccount> batch = new ArrayList<>(batchSize);
+        long created = 0;
+        long rejected = 0;
+        long lineNo = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank() || (lineNo == 1 && isHeader(line))) {
+                continue;
+            }
+            try {
+                batch.add(parse(line));
+            } catch (IllegalArgumentException ex) {
+                if (++rejected <= MAX_REPORTED_ERRORS) {
+                    System.err.println("Line " + lineNo + ": " + ex.getMessage());
+                }
+                continue;
+            }
+            if (batch.size() == batchSize) {
+                created += accounts.createAll(batch).length;
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            created += accounts.createAll(batch).length;
+        }
+        return new Result(created, rejected);
+    }
+
+    private static boolean isHeader(String line) {
+        return !Character.isDigit(line.stripLeading().charAt(0));
+    }
+
+    private static AccountType parseType(String text) {
+        String name = text.trim().toUpperCase(Locale.ROOT);
+        for (AccountType t : AccountType.values()) {
+            if (t.name().equals(name)) {
+                return t;
+            }
+        }
+        throw new IllegalArgumentException("unknown account type '" + text.trim() + "'");
+    }
+
+    static AccountRepository.NewAccount parse(String line) {
+        String[] cols = line.split(",", -1);
+        if (cols.length != 3) {
+            throw new IllegalArgumentException("expected customerNumber,accountType,initialCents but got '" + line + "'");
+        }
+        try {
+            int customer = Integer.parseInt(cols[0].trim());
+            AccountType type = parseType(cols[1]);
+            long cents = Long.parseLong(cols[2].trim());
+            if (cents < 0) {
+                throw new IllegalArgumentException("initialCents cannot be negative");
+            }
+            return new AccountRepository.NewAccount(customer, type, cents);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("not a number in '" + line + "'", ex);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache in front of another AccountRepository, keyed by customer.
+ * <p>
+ * A customer's account list is loaded once with {@code findAllByCustomer} and then serves
+ * the account menus until it expires (TTL) or is evicted (least recently used beyond
+ * {@code maxCustomers}). Every mutation made through this repository invalidates the
+ * customer's entry, so a session always sees its own writes; writes from other processes
+ * show up in the menus within the TTL. Single-account lookups ({@code findOneForCustomer},
+ * the balance screen) always go to the delegate.
+ * <p>
+ * Expired and invalidated lists are kept (until evicted) as the last known state: when
+ * a reload fails with {@link DatabaseUnavailableException}, that list is served instead.
+ * <p>
+ * Callers get copies, never the cached Account objects.
+ */
+public final class CachingAccountRepository implements AccountRepository {
+
+    static final String ENV_MAX_CUSTOMERS = "ACCOUNT_CACHE_MAX_CUSTOMERS";
+    static final String ENV_TTL_SECONDS = "ACCOUNT_CACHE_TTL_SECONDS";
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private static final class Entry {
+        final List<Account> accounts;
+        final long expiresAtNanos;
+
+        Entry(List<Account> accounts, long expiresAtNanos) {
+            this.accounts = accounts;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    /** Point-in-time counters. */
+    public static final class Stats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final long invalidations;
+        /** Misses answered with a last-known list because the delegate was unavailable. */
+        public final long staleServed;
+
+        Stats(long hits, long misses, long evictions, long invalidations, long staleServed) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+            this.staleServed = staleServed;
+        }
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d hitRate=%.1f%% evictions=%d invalidations=%d staleServed=%d",
+                    hits, misses, hitRate() * 100.0, evictions, invalidations, staleServed);
+        }
+    }
+
+    private final AccountRepository delegate;
+    private final long ttlNanos;
+    private final Map<Integer, Entry> byCustomer; // guarded by itself
+
+    // Bumped on every invalidation; a load only populates the cache if its stripe's
+    // generation didn't move while it was reading, so a slow read can't resurrect stale data.
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
+
+    public CachingAccountRepository(AccountRepository delegate, int maxCustomers, long ttl, TimeUnit unit) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate repository is required");
+        if (maxCustomers <= 0) {
+            throw new IllegalArgumentException("maxCustomers must be positive");
+        }
+        this.ttlNanos = unit.toNanos(ttl);
+        this.byCustomer = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                if (size() > maxCustomers) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Cache sized from ACCOUNT_CACHE_MAX_CUSTOMERS / ACCOUNT_CACHE_TTL_SECONDS. */
+    static CachingAccountRepository fromEnv(AccountRepository delegate) {
+        return new CachingAccountRepository(delegate,
+                EnvConfig.integer(ENV_MAX_CUSTOMERS, 10_000),
+                EnvConfig.integer(ENV_TTL_SECONDS, 30), TimeUnit.SECONDS);
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), staleServed.sum());
+    }
+
+    // ---- reads ---------------------------------------------------------------------
+
+    @Override
+    public List<Account> findAllByCustomer(int customerNumber) {
+        return copies(cachedAccounts(customerNumber));
+    }
+
+    @Override
+    public Account findOneForCustomer(int customerNumber, int accountNumber) {
+        try {
+            return delegate.findOneForCustomer(customerNumber, accountNumber);
+        } catch (DatabaseUnavailableException ex) {
+            Entry entry;
+            synchronized (byCustomer) {
+                entry = byCustomer.get(customerNumber);
+            }
+            if (entry != null) {
+                for (Account a : entry.accounts) {
+                    if (a.getAccountNumber() == accountNumber) {
+                        staleServed.increment();
+                        return copy(a);
+                    }
+                }
+            }
+            throw ex;
+        }
+    }
+
+    private List<Account> cachedAccounts(int customerNumber) {
+        Entry entry;
+        synchronized (byCustomer) {
+            entry = byCustomer.get(customerNumber);
+        }
+        if (entry != null && entry.expiresAtNanos - System.nanoTime() > 0) {
+            hits.increment();
+            return entry.accounts;
+        }
+        misses.increment();
+
+        int stripe = stripe(customerNumber);
+        long generation = generations.get(stripe);
+        List<Account> loaded;
+        try {
+            loaded = copies(delegate.findAllByCustomer(customerNumber));
+        } catch (DatabaseUnavailableException ex) {
+            if (entry == null) {
+                throw ex;
+            }
+            staleServed.increment();
+            return entry.accounts;
+        }
+        synchronized (byCustomer) {
+            if (generations.get(stripe) == generation) {
+                byCustomer.put(customerNumber, new Entry(loaded, System.nanoTime() + ttlNanos));
+            }
+        }
+        return loaded;
+    }
+
+    // ---- writes: delegate, then invalidate -----------------------------------------
+
+    /** Not cached: entries are keyed by customer, and payees are looked up once per payment. */
+    @Override
+    public Account findByAccountNumber(int accountNumber) {
+        return delegate.findByAccountNumber(accountNumber);
+    }
+
+    @Override
+    public void save(Account account) {
+        try {
+            delegate.save(account);
+        } finally {
+            invalidate(account.getCustomerNumber());
+        }
+    }
+
+    @Override
+    public int create(int customerNumber, AccountType type, long initialCents) {
+        try {
+            return delegate.create(customerNumber, type, initialCents);
+        } finally {
+            invalidate(customerNumber);
+        }
+    }
+
+    @Override
+    public int[] createAll(List<NewAccount> batch) {
+        try {
+            return delegate.createAll(batch);
+        } finally {
+            for (NewAccount a : batch) {
+                invalidate(a.customerNumber);
+            }
+        }
+    }
+
+    @Override
+    public long deposit(int customerNumber, int accountNumber, long cents) {
+        try {
+            return delegate.deposit(customerNumber, accountNumber, cents);
+        } finally {
+            invalidate(customerNumber);
+        }
+    }
+
+    @Override
+    public long withdraw(int customerNumber, int accountNumber, long cents) {
+        try {
+            return delegate.withdraw(customerNumber, accountNumber, cents);
+        } finally {
+            invalidate(customerNumber);
+        }
+    }
+
+    @Override
+    public AccountService.TransferResult transfer(int customerNumber, int fromAccount, int toAccount, long cents) {
+        try {
+            return delegate.transfer(customerNumber, fromAccount, toAccount, cents);
+        } finally {
+            invalidate(customerNumber);
+        }
+    }
+
+    @Override
+    public AccountService.TransferResult transferToAccount(int customerNumber, int fromAccount, int toAccount, long cents) {
+        AccountService.TransferResult result;
+        try {
+            result = delegate.transferToAccount(customerNumber, fromAccount, toAccount, cents);
+        } finally {
+            invalidate(customerNumber);
+        }
+        // the payee's cached balance is stale too; a failed transfer moved nothing, and a
+        // repository that does not report the payee leaves it to the TTL
+        if (result.toCustomerNumber != 0 && result.toCustomerNumber != customerNumber) {
+            invalidate(result.toCustomerNumber);
+        }
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<Void> depositDeferred(int customerNumber, int accountNumber, long cents) {
+        // the balance only changes once the batch commits
+        return delegate.depositDeferred(customerNumber, accountNumber, cents)
+                .whenComplete((ignored, ex) -> invalidate(customerNumber));
+    }
+
+    /** History is append-only and paged, so it is not cached. */
+    @Override
+    public List<AccountTransaction> history(int customerNumber, int accountNumber, long beforeId, int limit) {
+        return delegate.history(customerNumber, accountNumber, beforeId, limit);
+    }
+
+    @Override
+    public boolean isDegraded() {
+        return delegate.isDegraded();
+    }
+
+    /**
+     * Expire the customer's cached accounts; the next read goes to the delegate. The old
+     * list is only kept as the last known state.
+     */
+    public void invalidate(int customerNumber) {
+        generations.incrementAndGet(stripe(customerNumber));
+        synchronized (byCustomer) {
+            Entry entry = byCustomer.get(customerNumber);
+            if (entry != null) {
+                byCustomer.put(customerNumber, new Entry(entry.accounts, System.nanoTime()));
+            }
+        }
+        invalidations.increment();
+    }
+
+    // ---- helpers -------------------------------------------------------------------
+
+    private static int stripe(int customerNumber) {
+        return (customerNumber * 0x9E3779B9 >>> 16) & (GENERATION_STRIPES - 1);
+    }
+
+    private static List<Account> copies(List<Account> accounts) {
+        List<Account> list = new ArrayList<>(accounts.size());
+        for (Account a : accounts) {
+            list.add(copy(a));
+        }
+        return list;
+    }
+
+    private static Account copy(Account a) {
+        return Account.ofCents(a.getCustomerNumber(), a.getAccountNumber(), a.getAccountType(), a.getBalanceCents(),
+                a.getVersion());
+    }
+}
@@ -0,0 +1,526 @@
+package org.example;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe in-memory account store that keeps balances as {@code long} cents.
+ * <p>
+ * Accounts live in slots inside fixed-size chunks of primitive arrays, found through an
+ * {@link IntIntMap} from account number to slot. Balance mutations hold the lock stripe of
+ * the account (both stripes, in stripe order, for transfers); balance reads are lock-free
+ * volatile reads. Nothing on the deposit/withdraw/transfer path boxes or allocates apart
+ * from the returned {@link AccountService.TransferResult} (and an account's history ring,
+ * once).
+ * <p>
+ * {@link Account} objects handed out are snapshots; mutating them has no effect until
+ * they are passed to {@link #save}. Every balance change bumps the account's version, and
+ * save compares it the way {@link JdbcAccountRepository} compares ACCOUNTVERSION.
+ * <p>
+ * Each account also keeps its last few deposits, withdrawals and transfers in a
+ * {@link HistoryRing}, allocated on the account's first mutation and written under the
+ * same lock as the balance. The ring is bounded (ATM_HISTORY_PER_ACCOUNT entries, 0 turns
+ * it off) and in memory only: older entries are overwritten, and nothing survives a restart.
+ */
+public final class ConcurrentLedger implements AccountRepository, InterestAccrualJob.Ledger {
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final AccountType[] TYPES = AccountType.values();
+
+    static final String ENV_HISTORY_PER_ACCOUNT = "ATM_HISTORY_PER_ACCOUNT";
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final class Chunk {
+        final int[] customers = new int[CHUNK_SIZE];
+        final int[] accountNumbers = new int[CHUNK_SIZE];
+        final byte[] types = new byte[CHUNK_SIZE];
+        final long[] cents = new long[CHUNK_SIZE];
+        final long[] versions = new long[CHUNK_SIZE];
+        final int[] interestDays = new int[CHUNK_SIZE]; // last run date credited, as epoch day
+        final HistoryRing[] history = new HistoryRing[CHUNK_SIZE];
+    }
+
+    private final IntIntMap slotByAccount;
+    private final IntObjectMap<int[]> accountsByCustomer;
+    private final StripedLocks locks = StripedLocks.forAvailableProcessors();
+    private final AtomicInteger nextAccountNumber = new AtomicInteger(1000);
+    private final AccountNumberAllocator accountNumbers =
+            new AccountNumberAllocator(AccountNumberAllocator.consecutive(nextAccountNumber), 64);
+
+    private final int historyPerAccount;
+
+    private volatile Chunk[] chunks = new Chunk[0];
+    private int slotCount; // guarded by this
+
+    // interest runs by epoch day: {annual bp, high slot, done flag}
+    private final Map<Integer, int[]> interestRuns = new HashMap<>(); // guarded by itself
+
+    public ConcurrentLedger() {
+        this(1024);
+    }
+
+    /** Sized up front, so loading a large snapshot doesn't rehash along the way. */
+    ConcurrentLedger(int expectedAccounts) {
+        this(expectedAccounts, EnvConfig.integer(ENV_HISTORY_PER_ACCOUNT, 32));
+    }
+
+    ConcurrentLedger(int expectedAccounts, int historyPerAccount) {
+        if (historyPerAccount < 0) {
+            throw new IllegalArgumentException("historyPerAccount cannot be negative");
+        }
+        this.historyPerAccount = historyPerAccount;
+        this.slotByAccount = new IntIntMap(expectedAccounts, -1);
+        this.accountsByCustomer = new IntObjectMap<>(Math.max(16, expectedAccounts / 2));
+    }
+
+    /** Load an existing account (dev seed data, or restoring from another store). */
+    public void seed(Account account) {
+        save(account);
+        nextAccountNumber.accumulateAndGet(account.getAccountNumber() + 1, Math::max);
+    }
+
+    @Override
+    public List<Account> findAllByCustomer(int customerNumber) {
+        int[] numbers = accountsByCustomer.get(customerNumber);
+        if (numbers == null) {
+            return new ArrayList<>();
+        }
+        List<Account> list = new ArrayList<>(numbers.length);
+        for (int accountNumber : numbers) {
+            list.add(snapshot(slotByAccount.get(accountNumber)));
+        }
+        return list;
+    }
+
+    @Override
+    public Account findOneForCustomer(int customerNumber, int accountNumber) {
+        int slot = slotFor(customerNumber, accountNumber);
+        return slot < 0 ? null : snapshot(slot);
+    }
+
+    @Override
+    public Account findByAccountNumber(int accountNumber) {
+        int slot = slotByAccount.get(accountNumber);
+        return slot < 0 ? null : snapshot(slot);
+    }
+
+    @Override
+    public void save(Account account) {
+        Objects.requireNonNull(account, "account is required");
+        long cents = account.getBalanceCents();
+        int accountNumber = account.getAccountNumber();
+        int slot = slotByAccount.get(accountNumber);
+        if (slot < 0) {
+            insert(account.getCustomerNumber(), accountNumber, account.getAccountType(), cents);
+            account.setVersion(0);
+            return;
+        }
+        Chunk c = chunk(slot);
+        int i = slot & CHUNK_MASK;
+        if (c.customers[i] != account.getCustomerNumber()) {
+            throw new IllegalArgumentException("Account not found for this customer");
+        }
+        synchronized (locks.lock(accountNumber)) {
+            if (c.versions[i] != account.getVersion()) {
+                throw new AccountConflictException("Account " + accountNumber
+                        + " changed since it was read (version " + account.getVersion() + ")");
+            }
+            setCents(c, i, cents);
+            account.setVersion(c.versions[i]);
+        }
+    }
+
+    @Override
+    public int create(int customerNumber, AccountType type, long initialCents) {
+        Objects.requireNonNull(type, "type is required");
+        while (true) {
+            int accountNumber = accountNumbers.next();
+            // a block reserved before seed() ran may overlap seeded numbers; skip those
+            if (insertIfAbsent(customerNumber, accountNumber, type, initialCents)) {
+                return accountNumber;
+            }
+        }
+    }
+
+    @Override
+    public long deposit(int customerNumber, int accountNumber, long cents) {
+        int slot = requireSlot(customerNumber, accountNumber, "Account not found for this customer");
+        Chunk c = chunk(slot);
+        int i = slot & CHUNK_MASK;
+        synchronized (locks.lock(accountNumber)) {
+            long balance = Math.addExact(c.cents[i], cents);
+            setCents(c, i, balance);
+            record(c, i, accountNumber, AccountTransaction.Kind.DEPOSIT, cents, balance, 0);
+            return balance;
+        }
+    }
+
+    @Override
+    public long withdraw(int customerNumber, int accountNumber, long cents) {
+        int slot = requireSlot(customerNumber, accountNumber, "Account not found for this customer");
+        Chunk c = chunk(slot);
+        int i = slot & CHUNK_MASK;
+        synchronized (locks.lock(accountNumber)) {
+            long balance = c.cents[i];
+            if (balance < cents) {
+                throw new IllegalStateException("Insufficient funds or invalid amount");
+            }
+            balance -= cents;
+            setCents(c, i, balance);
+            record(c, i, accountNumber, AccountTransaction.Kind.WITHDRAWAL, cents, balance, 0);
+            return balance;
+        }
+    }
+
+    @Override
+    public AccountService.TransferResult transfer(int customerNumber, int fromAccount, int toAccount, long cents) {
+        int fromSlot = requireSlot(customerNumber, fromAccount, "Source account not found for this customer");
+        int toSlot = requireSlot(customerNumber, toAccount, "Destination account not found for this customer");
+        return move(fromSlot, fromAccount, toSlot, toAccount, cents);
+    }
+
+    @Override
+    public AccountService.TransferResult transferToAccount(int customerNumber, int fromAccount, int toAccount, long cents) {
+        int fromSlot = requireSlot(customerNumber, fromAccount, "Source account not found for this customer");
+        int toSlot = slotByAccount.get(toAccount);
+        if (toSlot < 0) {
+            throw new IllegalArgumentException("Destination account not found");
+        }
+        return move(fromSlot, fromAccount, toSlot, toAccount, cents);
+    }
+
+    /**
+     * Both stripes are taken in stripe order, whichever direction the money goes, so
+     * opposite transfers between any two accounts (same customer or not) cannot deadlock.
+     */
+    private AccountService.TransferResult move(int fromSlot, int fromAccount, int toSlot, int toAccount, long cents) {
+        Chunk fc = chunk(fromSlot);
+        Chunk tc = chunk(toSlot);
+        int fi = fromSlot & CHUNK_MASK;
+        int ti = toSlot & CHUNK_MASK;
+
+        synchronized (locks.first(fromAccount, toAccount)) {
+            synchronized (locks.second(fromAccount, toAccount)) {
+                long fromBalance = fc.cents[fi];
+                if (fromBalance < cents) {
+                    throw new IllegalStateException("Insufficient funds");
+                }
+                long toBalance = Math.addExact(tc.cents[ti], cents);
+                fromBalance -= cents;
+                setCents(fc, fi, fromBalance);
+                setCents(tc, ti, toBalance);
+                record(fc, fi, fromAccount, AccountTransaction.Kind.TRANSFER_OUT, cents, fromBalance, toAccount);
+                record(tc, ti, toAccount, AccountTransaction.Kind.TRANSFER_IN, cents, toBalance, fromAccount);
+                return AccountService.TransferResult.ofCents(fromBalance, toBalance, tc.customers[ti]);
+            }
+        }
+    }
+
+    @Override
+    public List<AccountTransaction> history(int customerNumber, int accountNumber, long beforeId, int limit) {
+        int slot = slotFor(customerNumber, accountNumber);
+        if (slot < 0 || limit <= 0) {
+            return List.of();
+        }
+        Chunk c = chunk(slot);
+        synchronized (locks.lock(accountNumber)) {
+            HistoryRing ring = c.history[slot & CHUNK_MASK];
+            return ring == null ? List.of() : ring.page(beforeId, limit);
+        }
+    }
+
+    /** Current balance in cents, or -1 if the account does not exist. */
+    public long balanceCents(int accountNumber) {
+        int slot = slotByAccount.get(accountNumber);
+        return slot < 0 ? -1 : (long) LONGS.getVolatile(chunk(slot).cents, slot & CHUNK_MASK);
+    }
+
+    /** Number of accounts stored. */
+    public int size() {
+        synchronized (this) {
+            return slotCount;
+        }
+    }
+
+    /** Receives one account per call, without allocating an Account. */
+    @FunctionalInterface
+    public interface AccountVisitor {
+        void visit(int customerNumber, int accountNumber, AccountType type, long cents);
+    }
+
+    /**
+     * Visits every account in creation order. Balances are read one by one while traffic
+     * continues, so this is not a consistent cut unless writers are paused.
+     */
+    public void forEach(AccountVisitor visitor) {
+        int count = size();
+        Chunk[] current = chunks;
+        for (int slot = 0; slot < count; slot++) {
+            Chunk c = current[slot >>> CHUNK_BITS];
+            int i = slot & CHUNK_MASK;
+            visitor.visit(c.customers[i], c.accountNumbers[i], TYPES[c.types[i]],
+                    (long) LONGS.getVolatile(c.cents, i));
+        }
+    }
+
+    /**
+     * Visits the accounts of every customer in partition {@code part} of {@code parts}, all
+     * of one customer's accounts before the next customer's. The partitions together cover
+     * each customer exactly once, so they can be visited in parallel. Same consistency as
+     * {@link #forEach}.
+     */
+    public void forEachByCustomer(int part, int parts, AccountVisitor visitor) {
+        if (parts <= 0 || part < 0 || part >= parts) {
+            throw new IllegalArgumentException("part must be in [0, parts)");
+        }
+        accountsByCustomer.forEach((customerNumber, owned) -> {
+            if (Math.floorMod(customerNumber * 0x9E3779B9, parts) != part) {
+                return;
+            }
+            for (int accountNumber : owned) {
+                int slot = slotByAccount.get(accountNumber);
+                Chunk c = chunk(slot);
+                int i = slot & CHUNK_MASK;
+                visitor.visit(customerNumber, accountNumber, TYPES[c.types[i]],
+                        (long) LONGS.getVolatile(c.cents, i));
+            }
+        });
+    }
+
+    // ---- interest (InterestAccrualJob) ---------------------------------------------
+
+    @Override
+    public int[] startInterestRun(int epochDay, int annualBasisPoints) {
+        synchronized (interestRuns) {
+            int[] run = interestRuns.get(epochDay);
+            if (run != null) {
+                return new int[]{run[0], run[1], run[2], 1};
+            }
+            int high = size();
+            interestRuns.put(epochDay, new int[]{annualBasisPoints, high, 0});
+            return new int[]{annualBasisPoints, high, 0, 0};
+        }
+    }
+
+    /**
+     * Credit one day's interest to the account in {@code slot} if it is a SAVINGS account
+     * not yet credited for {@code epochDay} or a later date, under that account's lock.
+     */
+    @Override
+    public long accrueInterest(int slot, int annualBasisPoints, int epochDay) {
+        Chunk c = chunk(slot);
+        int i = slot & CHUNK_MASK;
+        if (TYPES[c.types[i]] != AccountType.SAVINGS) {
+            return 0;
+        }
+        int accountNumber = c.accountNumbers[i];
+        synchronized (locks.lock(accountNumber)) {
+            if (c.interestDays[i] >= epochDay) {
+                return 0;
+            }
+            long balance = c.cents[i];
+            long interest = InterestAccrualJob.dailyInterestCents(balance, annualBasisPoints);
+            if (interest == 0) {
+                return 0;
+            }
+            balance = Math.addExact(balance, interest);
+            setCents(c, i, balance);
+            c.interestDays[i] = epochDay;
+            record(c, i, accountNumber, AccountTransaction.Kind.INTEREST, interest, balance, 0);
+            return interest;
+        }
+    }
+
+    @Override
+    public void finishInterestRun(int epochDay) {
+        synchronized (interestRuns) {
+            int[] run = interestRuns.get(epochDay);
+            if (run == null) {
+                throw new IllegalStateException("No interest run for epoch day " + epochDay);
+            }
+            run[2] = 1;
+        }
+    }
+
+    int accountNumberAt(int slot) {
+        return chunk(slot).accountNumbers[slot & CHUNK_MASK];
+    }
+
+    /** Caller pauses writers (snapshot cut). */
+    int interestDayAt(int slot) {
+        return chunk(slot).interestDays[slot & CHUNK_MASK];
+    }
+
+    /** Copies of every interest run as {epoch day, annual bp, high slot, done flag}. */
+    List<int[]> interestRuns() {
+        synchronized (interestRuns) {
+            List<int[]> runs = new ArrayList<>(interestRuns.size());
+            interestRuns.forEach((day, run) -> runs.add(new int[]{day, run[0], run[1], run[2]}));
+            return runs;
+        }
+    }
+
+    // ---- recovery hooks (journal replay): no ownership or funds checks --------------
+
+    /** Insert an account with a known number, or overwrite its balance if it exists. */
+    void restore(int customerNumber, int accountNumber, AccountType type, long cents) {
+        if (!insertIfAbsent(customerNumber, accountNumber, type, cents)) {
+            setBalance(accountNumber, cents);
+        }
+        nextAccountNumber.accumulateAndGet(accountNumber + 1, Math::max);
+    }
+
+    /**
+     * Credit interest journaled for {@code epochDay} the way {@link #adjust} does; with 0
+     * cents (from a snapshot) only the account's last interest date is set.
+     */
+    void restoreInterest(int accountNumber, long cents, int epochDay) {
+        int slot = slotByAccount.get(accountNumber);
+        if (slot < 0) {
+            throw new IllegalStateException("Account " + accountNumber + " does not exist");
+        }
+        Chunk c = chunk(slot);
+        int i = slot & CHUNK_MASK;
+        synchronized (locks.lock(accountNumber)) {
+            if (cents != 0) {
+                setCents(c, i, c.cents[i] + cents);
+            }
+            c.interestDays[i] = Math.max(c.interestDays[i], epochDay);
+        }
+    }
+
+    void restoreInterestRun(int epochDay, int annualBasisPoints, int highSlot, boolean done) {
+        synchronized (interestRuns) {
+            interestRuns.put(epochDay, new int[]{annualBasisPoints, highSlot, done ? 1 : 0});
+        }
+    }
+
+    boolean contains(int accountNumber) {
+        return slotByAccount.containsKey(accountNumber);
+    }
+
+    void adjust(int accountNumber, long deltaCents) {
+        int slot = slotByAccount.get(accountNumber);
+        if (slot < 0) {
+            throw new IllegalStateException("Account " + accountNumber + " does not exist");
+        }
+        Chunk c = chunk(slot);
+        int i = slot & CHUNK_MASK;
+        synchronized (locks.lock(accountNumber)) {
+            setCents(c, i, c.cents[i] + deltaCents);
+        }
+    }
+
+    void setBalance(int accountNumber, long cents) {
+        int slot = slotByAccount.get(accountNumber);
+        if (slot < 0) {
+            throw new IllegalStateException("Account " + accountNumber + " does not exist");
+        }
+        synchronized (locks.lock(accountNumber)) {
+            setCents(chunk(slot), slot & CHUNK_MASK, cents);
+        }
+    }
+
+    // ---- internals -----------------------------------------------------------------
+
+    /**
+     * Caller holds the account's lock. The version is published after the balance, so a
+     * reader that sees the new version also sees the new balance.
+     */
+    private static void setCents(Chunk c, int i, long cents) {
+        LONGS.setVolatile(c.cents, i, cents);
+        LONGS.setVolatile(c.versions, i, c.versions[i] + 1);
+    }
+
+    /** Caller holds the account's lock. */
+    private void record(Chunk c, int i, int accountNumber, AccountTransaction.Kind kind,
+                        long cents, long balanceAfter, int counterparty) {
+        if (historyPerAccount == 0) {
+            return;
+        }
+        HistoryRing ring = c.history[i];
+        if (ring == null) {
+            ring = new HistoryRing(accountNumber, historyPerAccount);
+            c.history[i] = ring;
+        }
+        ring.append(kind, cents, balanceAfter, counterparty, System.currentTimeMillis());
+    }
+
+    private void insert(int customerNumber, int accountNumber, AccountType type, long cents) {
+        if (!insertIfAbsent(customerNumber, accountNumber, type, cents)) {
+            throw new IllegalStateException("Account " + accountNumber + " already exists");
+        }
+    }
+
+    private synchronized boolean insertIfAbsent(int customerNumber, int accountNumber, AccountType type, long cents) {
+        if (slotByAccount.containsKey(accountNumber)) {
+            return false;
+        }
+        int slot = slotCount;
+        int chunkIndex = slot >>> CHUNK_BITS;
+        Chunk[] current = chunks;
+        if (chunkIndex == current.length) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[chunkIndex] = new Chunk();
+            chunks = current;
+        }
+        Chunk c = current[chunkIndex];
+        int i = slot & CHUNK_MASK;
+        c.customers[i] = customerNumber;
+        c.accountNumbers[i] = accountNumber;
+        c.types[i] = (byte) type.ordinal();
+        LONGS.setVolatile(c.cents, i, cents);
+        slotCount = slot + 1;
+
+        // publishing the index entry makes the slot visible to readers
+        slotByAccount.put(accountNumber, slot);
+        int[] owned = accountsByCustomer.get(customerNumber);
+        if (owned == null) {
+            owned = new int[]{accountNumber};
+        } else {
+            // copy-on-write: readers holding the old array never see it change
+            owned = Arrays.copyOf(owned, owned.length + 1);
+            owned[owned.length - 1] = accountNumber;
+        }
+        accountsByCustomer.put(customerNumber, owned);
+        return true;
+    }
+
+    private int slotFor(int customerNumber, int accountNumber) {
+        int slot = slotByAccount.get(accountNumber);
+        if (slot < 0 || chunk(slot).customers[slot & CHUNK_MASK] != customerNumber) {
+            return -1;
+        }
+        return slot;
+    }
+
+    private int requireSlot(int customerNumber, int accountNumber, String notFoundMessage) {
+        int slot = slotFor(customerNumber, accountNumber);
+        if (slot < 0) {
+            throw new IllegalArgumentException(notFoundMessage);
+        }
+        return slot;
+    }
+
+    private Chunk chunk(int slot) {
+        return chunks[slot >>> CHUNK_BITS];
+    }
+
+    private Account snapshot(int slot) {
+        Chunk c = chunk(slot);
+        int i = slot & CHUNK_MASK;
+        // version first: a balance newer than its version only makes save() conflict
+        long version = (long) LONGS.getVolatile(c.versions, i);
+        long cents = (long) LONGS.getVolatile(c.cents, i);
+        return Account.ofCents(c.customers[i], c.accountNumbers[i], TYPES[c.types[i]], cents, version);
+    }
+}
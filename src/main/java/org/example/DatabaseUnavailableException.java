@@ -0,0 +1,18 @@
+package org.example;
+
+/**
+ * The database did not answer in time, or calls to it are being rejected while it
+ * recovers (see {@link ResilientAccountRepository}). An IllegalStateException, so menus
+ * that already report failed operations show its message as is.
+ */
+public class DatabaseUnavailableException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public DatabaseUnavailableException(String message) {
+        super(message);
+    }
+
+    public DatabaseUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,39 @@
+package org.example;
+
+import java.util.Optional;
+
+/**
+ * Reads runtime settings. A JVM system property ({@code -DDB_POOL_MAX_SIZE=40}) wins over
+ * an environment variable of the same name; blank values count as unset.
+ */
+final class EnvConfig {
+    private EnvConfig() {
+    }
+
+    static Optional<String> lookup(String key) {
+        return Optional.ofNullable(System.getProperty(key))
+                .or(() -> Optional.ofNullable(System.getenv(key)))
+                .filter(v -> !v.isBlank())
+                .map(String::trim);
+    }
+
+    static String string(String key, String defaultValue) {
+        return lookup(key).orElse(defaultValue);
+    }
+
+    static int integer(String key, int defaultValue) {
+        return lookup(key).map(v -> parse(key, v)).orElse(defaultValue);
+    }
+
+    static boolean flag(String key, boolean defaultValue) {
+        return lookup(key).map(Boolean::parseBoolean).orElse(defaultValue);
+    }
+
+    private static int parse(String key, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException(key + " must be an integer but was '" + value + "'", ex);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The most recent {@code capacity} history entries of one account, in parallel primitive
+ * arrays that are allocated once and then overwritten in place. Entry ids count up from 1,
+ * so the entry with id {@code n} lives at index {@code (n - 1) % capacity} and a page is
+ * found without searching. Callers hold the account's lock for both appends and reads.
+ */
+final class HistoryRing {
+    private static final AccountTransaction.Kind[] KINDS = AccountTransaction.Kind.values();
+
+    private final int accountNumber;
+    private final byte[] kinds;
+    private final int[] counterparties;
+    private final long[] amounts;
+    private final long[] balances;
+    private final long[] times;
+    private long lastId;
+
+    HistoryRing(int accountNumber, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.accountNumber = accountNumber;
+        this.kinds = new byte[capacity];
+        this.counterparties = new int[capacity];
+        this.amounts = new long[capacity];
+        this.balances = new long[capacity];
+        this.times = new long[capacity];
+    }
+
+    void append(AccountTransaction.Kind kind, long amountCents, long balanceAfterCents,
+                int counterpartyAccount, long timestampMillis) {
+        int i = (int) (lastId++ % kinds.length);
+        kinds[i] = (byte) kind.ordinal();
+        counterparties[i] = counterpartyAccount;
+        amounts[i] = amountCents;
+        balances[i] = balanceAfterCents;
+        times[i] = timestampMillis;
+    }
+
+    /** Newest first, ids below {@code beforeId}; entries already overwritten are gone. */
+    List<AccountTransaction> page(long beforeId, int limit) {
+        long oldest = Math.max(1, lastId - kinds.length + 1);
+        long id = Math.min(lastId, beforeId - 1);
+        List<AccountTransaction> page = new ArrayList<>((int) Math.max(0, Math.min(limit, id - oldest + 1)));
+        for (; id >= oldest && page.size() < limit; id--) {
+            int i = (int) ((id - 1) % kinds.length);
+            page.add(new AccountTransaction(id, accountNumber, KINDS[kinds[i]], amounts[i], balances[i],
+                    counterparties[i], times[i]));
+        }
+        return page;
+    }
+}
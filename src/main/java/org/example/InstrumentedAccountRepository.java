@@ -0,0 +1,204 @@
+package org.example;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Times every call into another AccountRepository under {@code <prefix>.<method>}.
+ * Exceptions are counted as errors and rethrown unchanged.
+ */
+final class InstrumentedAccountRepository implements AccountRepository {
+
+    private final AccountRepository delegate;
+    private final LatencyHistogram findAll;
+    private final LatencyHistogram findOne;
+    private final LatencyHistogram findByNumber;
+    private final LatencyHistogram save;
+    private final LatencyHistogram create;
+    private final LatencyHistogram createAll;
+    private final LatencyHistogram deposit;
+    private final LatencyHistogram withdraw;
+    private final LatencyHistogram transfer;
+    private final LatencyHistogram transferToAccount;
+    private final LatencyHistogram depositDeferred;
+    private final LatencyHistogram history;
+
+    InstrumentedAccountRepository(AccountRepository delegate, Metrics metrics, String prefix) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate repository is required");
+        this.findAll = metrics.histogram(prefix + ".findAllByCustomer");
+        this.findOne = metrics.histogram(prefix + ".findOneForCustomer");
+        this.findByNumber = metrics.histogram(prefix + ".findByAccountNumber");
+        this.save = metrics.histogram(prefix + ".save");
+        this.create = metrics.histogram(prefix + ".create");
+        this.createAll = metrics.histogram(prefix + ".createAll");
+        this.deposit = metrics.histogram(prefix + ".deposit");
+        this.withdraw = metrics.histogram(prefix + ".withdraw");
+        this.transfer = metrics.histogram(prefix + ".transfer");
+        this.transferToAccount = metrics.histogram(prefix + ".transferToAccount");
+        this.depositDeferred = metrics.histogram(prefix + ".depositDeferred");
+        this.history = metrics.histogram(prefix + ".history");
+    }
+
+    @Override
+    public List<Account> findAllByCustomer(int customerNumber) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findAllByCustomer(customerNumber);
+        } catch (RuntimeException ex) {
+            findAll.error();
+            throw ex;
+        } finally {
+            findAll.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Account findOneForCustomer(int customerNumber, int accountNumber) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findOneForCustomer(customerNumber, accountNumber);
+        } catch (RuntimeException ex) {
+            findOne.error();
+            throw ex;
+        } finally {
+            findOne.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Account findByAccountNumber(int accountNumber) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findByAccountNumber(accountNumber);
+        } catch (RuntimeException ex) {
+            findByNumber.error();
+            throw ex;
+        } finally {
+            findByNumber.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void save(Account account) {
+        long start = System.nanoTime();
+        try {
+            delegate.save(account);
+        } catch (RuntimeException ex) {
+            save.error();
+            throw ex;
+        } finally {
+            save.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int create(int customerNumber, AccountType type, long initialCents) {
+        long start = System.nanoTime();
+        try {
+            return delegate.create(customerNumber, type, initialCents);
+        } catch (RuntimeException ex) {
+            create.error();
+            throw ex;
+        } finally {
+            create.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int[] createAll(List<NewAccount> batch) {
+        long start = System.nanoTime();
+        try {
+            return delegate.createAll(batch);
+        } catch (RuntimeException ex) {
+            createAll.error();
+            throw ex;
+        } finally {
+            createAll.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long deposit(int customerNumber, int accountNumber, long cents) {
+        long start = System.nanoTime();
+        try {
+            return delegate.deposit(customerNumber, accountNumber, cents);
+        } catch (RuntimeException ex) {
+            deposit.error();
+            throw ex;
+        } finally {
+            deposit.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long withdraw(int customerNumber, int accountNumber, long cents) {
+        long start = System.nanoTime();
+        try {
+            return delegate.withdraw(customerNumber, accountNumber, cents);
+        } catch (RuntimeException ex) {
+            withdraw.error();
+            throw ex;
+        } finally {
+            withdraw.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public AccountService.TransferResult transfer(int customerNumber, int fromAccount, int toAccount, long cents) {
+        long start = System.nanoTime();
+        try {
+            return delegate.transfer(customerNumber, fromAccount, toAccount, cents);
+        } catch (RuntimeException ex) {
+            transfer.error();
+            throw ex;
+        } finally {
+            transfer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public AccountService.TransferResult transferToAccount(int customerNumber, int fromAccount, int toAccount, long cents) {
+        long start = System.nanoTime();
+        try {
+            return delegate.transferToAccount(customerNumber, fromAccount, toAccount, cents);
+        } catch (RuntimeException ex) {
+            transferToAccount.error();
+            throw ex;
+        } finally {
+            transferToAccount.record(System.nanoTime() - start);
+        }
+    }
+
+    /** Timed until the deposit is durable (the future completes), not just until it is queued. */
+    @Override
+    public CompletableFuture<Void> depositDeferred(int customerNumber, int accountNumber, long cents) {
+        long start = System.nanoTime();
+        CompletableFuture<Void> done = delegate.depositDeferred(customerNumber, accountNumber, cents);
+        done.whenComplete((ignored, ex) -> {
+            if (ex != null) {
+                depositDeferred.error();
+            }
+            depositDeferred.record(System.nanoTime() - start);
+        });
+        return done;
+    }
+
+    @Override
+    public List<AccountTransaction> history(int customerNumber, int accountNumber, long beforeId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.history(customerNumber, accountNumber, beforeId, limit);
+        } catch (RuntimeException ex) {
+            history.error();
+            throw ex;
+        } finally {
+            history.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean isDegraded() {
+        return delegate.isDegraded();
+    }
+}
@@ -0,0 +1,144 @@
+package org.example;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Times every AccountService call under {@code service.<method>}; exceptions count as errors.
+ * The dollar and cents variants of an operation share one histogram.
+ */
+final class InstrumentedAccountService implements AccountService {
+
+    private final AccountService delegate;
+    private final LatencyHistogram deposit;
+    private final LatencyHistogram withdraw;
+    private final LatencyHistogram transfer;
+    private final LatencyHistogram transferToAccount;
+    private final LatencyHistogram depositDeferred;
+
+    InstrumentedAccountService(AccountService delegate, Metrics metrics) {
+        this.delegate = Objects.requireNonNull(delegate, "account service required");
+        this.deposit = metrics.histogram("service.deposit");
+        this.withdraw = metrics.histogram("service.withdraw");
+        this.transfer = metrics.histogram("service.transfer");
+        this.transferToAccount = metrics.histogram("service.transferToAccount");
+        this.depositDeferred = metrics.histogram("service.depositDeferred");
+    }
+
+    @Override
+    public double deposit(int customerNumber, int accountNumber, double amount) {
+        long start = System.nanoTime();
+        try {
+            return delegate.deposit(customerNumber, accountNumber, amount);
+        } catch (RuntimeException ex) {
+            deposit.error();
+            throw ex;
+        } finally {
+            deposit.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public double withdraw(int customerNumber, int accountNumber, double amount) {
+        long start = System.nanoTime();
+        try {
+            return delegate.withdraw(customerNumber, accountNumber, amount);
+        } catch (RuntimeException ex) {
+            withdraw.error();
+            throw ex;
+        } finally {
+            withdraw.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public TransferResult transfer(int customerNumber, int fromAccount, int toAccount, double amount) {
+        long start = System.nanoTime();
+        try {
+            return delegate.transfer(customerNumber, fromAccount, toAccount, amount);
+        } catch (RuntimeException ex) {
+            transfer.error();
+            throw ex;
+        } finally {
+            transfer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public TransferResult transferToAccount(int customerNumber, int fromAccount, int toAccount, double amount) {
+        long start = System.nanoTime();
+        try {
+            return delegate.transferToAccount(customerNumber, fromAccount, toAccount, amount);
+        } catch (RuntimeException ex) {
+            transferToAccount.error();
+            throw ex;
+        } finally {
+            transferToAccount.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> depositDeferred(int customerNumber, int accountNumber, double amount) {
+        long start = System.nanoTime();
+        CompletableFuture<Void> done = delegate.depositDeferred(customerNumber, accountNumber, amount);
+        done.whenComplete((ignored, ex) -> {
+            if (ex != null) {
+                depositDeferred.error();
+            }
+            depositDeferred.record(System.nanoTime() - start);
+        });
+        return done;
+    }
+
+    @Override
+    public long depositCents(int customerNumber, int accountNumber, long cents) {
+        long start = System.nanoTime();
+        try {
+            return delegate.depositCents(customerNumber, accountNumber, cents);
+        } catch (RuntimeException ex) {
+            deposit.error();
+            throw ex;
+        } finally {
+            deposit.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long withdrawCents(int customerNumber, int accountNumber, long cents) {
+        long start = System.nanoTime();
+        try {
+            return delegate.withdrawCents(customerNumber, accountNumber, cents);
+        } catch (RuntimeException ex) {
+            withdraw.error();
+            throw ex;
+        } finally {
+            withdraw.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public TransferResult transferCents(int customerNumber, int fromAccount, int toAccount, long cents) {
+        long start = System.nanoTime();
+        try {
+            return delegate.transferCents(customerNumber, fromAccount, toAccount, cents);
+        } catch (RuntimeException ex) {
+            transfer.error();
+            throw ex;
+        } finally {
+            transfer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public TransferResult transferToAccountCents(int customerNumber, int fromAccount, int toAccount, long cents) {
+        long start = System.nanoTime();
+        try {
+            return delegate.transferToAccountCents(customerNumber, fromAccount, toAccount, cents);
+        } catch (RuntimeException ex) {
+            transferToAccount.error();
+            throw ex;
+        } finally {
+            transferToAccount.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.example;
+
+import java.util.Objects;
+
+/** Times PIN checks under {@code auth.verify}; a rejected PIN is not an error, an exception is. */
+final class InstrumentedAuthRepository implements OptionMenu.AuthenticationRepository {
+
+    private final OptionMenu.AuthenticationRepository delegate;
+    private final LatencyHistogram verify;
+
+    InstrumentedAuthRepository(OptionMenu.AuthenticationRepository delegate, Metrics metrics) {
+        this.delegate = Objects.requireNonNull(delegate, "authentication repository required");
+        this.verify = metrics.histogram("auth.verify");
+    }
+
+    @Override
+    public boolean verify(int customerNumber, int pin) {
+        long start = System.nanoTime();
+        try {
+            return delegate.verify(customerNumber, pin);
+        } catch (RuntimeException ex) {
+            verify.error();
+            throw ex;
+        } finally {
+            verify.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.example;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Open-addressing int -> int hash map (linear probing, no boxing).
+ * <p>
+ * Writers must be serialized by the caller; readers may call {@link #get} at any time
+ * without locking. A value is always written before its key is published, and a resize
+ * builds a complete new table before swapping it in, so a concurrent reader sees either
+ * the whole entry or nothing.
+ */
+final class IntIntMap {
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int EMPTY = 0;
+
+    private static final class Table {
+        final int[] keys;
+        final int[] values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private final int missing;
+    private volatile Table table;
+    private int size;
+
+    // key 0 is the "empty" marker in the table, so it lives outside it
+    private volatile boolean hasZeroKey;
+    private volatile int zeroValue;
+
+    /** @param missing value returned by {@link #get} for absent keys */
+    IntIntMap(int expectedSize, int missing) {
+        this.missing = missing;
+        this.table = new Table(tableSizeFor(expectedSize));
+    }
+
+    int get(int key) {
+        if (key == EMPTY) {
+            return hasZeroKey ? zeroValue : missing;
+        }
+        Table t = table;
+        for (int i = mix(key) & t.mask; ; i = (i + 1) & t.mask) {
+            int k = (int) INTS.getAcquire(t.keys, i);
+            if (k == key) {
+                return (int) INTS.getAcquire(t.values, i);
+            }
+            if (k == EMPTY) {
+                return missing;
+            }
+        }
+    }
+
+    boolean containsKey(int key) {
+        return get(key) != missing;
+    }
+
+    /** Callers must serialize writes. */
+    void put(int key, int value) {
+        if (key == EMPTY) {
+            zeroValue = value;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            return;
+        }
+        Table t = table;
+        if ((size + 1) * 4 > t.keys.length * 3) {
+            t = resize(t);
+        }
+        if (insert(t, key, value)) {
+            size++;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private Table resize(Table old) {
+        Table bigger = new Table(old.keys.length * 2);
+        for (int i = 0; i < old.keys.length; i++) {
+            int k = old.keys[i];
+            if (k != EMPTY) {
+                insert(bigger, k, old.values[i]);
+            }
+        }
+        table = bigger;
+        return bigger;
+    }
+
+    /** @return true if the key was new */
+    private static boolean insert(Table t, int key, int value) {
+        for (int i = mix(key) & t.mask; ; i = (i + 1) & t.mask) {
+            int k = t.keys[i];
+            if (k == key) {
+                INTS.setRelease(t.values, i, value);
+                return false;
+            }
+            if (k == EMPTY) {
+                INTS.setRelease(t.values, i, value);
+                INTS.setRelease(t.keys, i, key);
+                return true;
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = Math.max(4, (int) Math.min(1 << 30, (expectedSize * 4L + 2) / 3));
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+}
@@ -0,0 +1,138 @@
+package org.example;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Open-addressing int -> object hash map (linear probing, no boxed keys).
+ * <p>
+ * Same concurrency contract as {@link IntIntMap}: writers must be serialized by the
+ * caller, readers may call {@link #get} at any time without locking and see either the
+ * whole entry or nothing.
+ */
+final class IntObjectMap<V> {
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle OBJECTS = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final int EMPTY = 0;
+
+    private static final class Table {
+        final int[] keys;
+        final Object[] values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private volatile Table table;
+    private int size;
+
+    // key 0 is the "empty" marker in the table, so it lives outside it
+    private volatile Object zeroValue;
+
+    IntObjectMap(int expectedSize) {
+        this.table = new Table(tableSizeFor(expectedSize));
+    }
+
+    /** @return the value, or null if absent */
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        if (key == EMPTY) {
+            return (V) zeroValue;
+        }
+        Table t = table;
+        for (int i = mix(key) & t.mask; ; i = (i + 1) & t.mask) {
+            int k = (int) INTS.getAcquire(t.keys, i);
+            if (k == key) {
+                return (V) OBJECTS.getAcquire(t.values, i);
+            }
+            if (k == EMPTY) {
+                return null;
+            }
+        }
+    }
+
+    /** Callers must serialize writes; {@code value} must not be null. */
+    void put(int key, V value) {
+        if (key == EMPTY) {
+            if (zeroValue == null) {
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        Table t = table;
+        if ((size + 1) * 4 > t.keys.length * 3) {
+            t = resize(t);
+        }
+        if (insert(t, key, value)) {
+            size++;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    @FunctionalInterface
+    interface EntryVisitor<V> {
+        void visit(int key, V value);
+    }
+
+    /** Visits every entry of the table as it is now; entries put meanwhile may be missed. */
+    @SuppressWarnings("unchecked")
+    void forEach(EntryVisitor<? super V> visitor) {
+        Object zero = zeroValue;
+        if (zero != null) {
+            visitor.visit(EMPTY, (V) zero);
+        }
+        Table t = table;
+        for (int i = 0; i < t.keys.length; i++) {
+            int k = (int) INTS.getAcquire(t.keys, i);
+            if (k != EMPTY) {
+                visitor.visit(k, (V) OBJECTS.getAcquire(t.values, i));
+            }
+        }
+    }
+
+    private Table resize(Table old) {
+        Table bigger = new Table(old.keys.length * 2);
+        for (int i = 0; i < old.keys.length; i++) {
+            int k = old.keys[i];
+            if (k != EMPTY) {
+                insert(bigger, k, old.values[i]);
+            }
+        }
+        table = bigger;
+        return bigger;
+    }
+
+    /** @return true if the key was new */
+    private static boolean insert(Table t, int key, Object value) {
+        for (int i = mix(key) & t.mask; ; i = (i + 1) & t.mask) {
+            int k = t.keys[i];
+            if (k == key) {
+                OBJECTS.setRelease(t.values, i, value);
+                return false;
+            }
+            if (k == EMPTY) {
+                OBJECTS.setRelease(t.values, i, value);
+                INTS.setRelease(t.keys, i, key);
+                return true;
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = Math.max(4, (int) Math.min(1 << 30, (expectedSize * 4L + 2) / 3));
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+}
@@ -0,0 +1,394 @@
+package org.example;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * End-of-day interest for SAVINGS accounts: one day's share of an annual rate given in
+ * basis points, floored to the cent, credited as an {@code INTEREST} history entry.
+ * <ul>
+ *   <li>JDBC ({@link #run(OracleDBUtil)}): account-number ranges of
+ *       {@code chunkAccounts}, one PL/SQL block and one commit per range. The block
+ *       locks only that range's SAVINGS rows, credits them set-wise and advances the
+ *       INTERESTRUN checkpoint row in the same transaction, so running the same date
+ *       again resumes after the last committed range, and a finished date is a no-op.</li>
+ *   <li>In memory ({@link #run(ConcurrentLedger)}, {@link #run(JournaledAccountRepository)}):
+ *       a fork/join sweep over the slots that were in use when the date's run started,
+ *       each account credited under its own lock. The store keeps the run and each
+ *       account's last credited date (the journaled one persists both), so running the
+ *       same date again, from any job object, credits only what is still missing.</li>
+ * </ul>
+ * Online traffic keeps running throughout: nothing is locked longer than one range
+ * (JDBC) or one account (in memory). Progress is logged at most once a second.
+ * <p>
+ * One job per run date at a time, dates in order (in memory, an account credited for a
+ * later date is skipped); accounts opened after a run starts wait for the next day.
+ */
+public final class InterestAccrualJob {
+    private static final Logger logger = Logger.getLogger(InterestAccrualJob.class.getName());
+
+    static final String ENV_ANNUAL_BP = "ATM_INTEREST_ANNUAL_BP";
+    static final String ENV_CHUNK_ACCOUNTS = "ATM_INTEREST_CHUNK_ACCOUNTS";
+    static final String ENV_PARALLELISM = "ATM_INTEREST_PARALLELISM";
+
+    // basis points per year -> share of one day
+    private static final long DAY_DIVISOR = 365L * 10_000;
+
+    //   CREATE TABLE INTERESTRUN (
+    //     RUNDATE DATE PRIMARY KEY, RATEBP NUMBER NOT NULL, LASTACCOUNT NUMBER NOT NULL,
+    //     HIGHACCOUNT NUMBER NOT NULL, ACCOUNTS NUMBER NOT NULL, CENTS NUMBER NOT NULL,
+    //     DONE NUMBER(1) NOT NULL);
+    private static final String SQL_FIND_RUN =
+            "SELECT RATEBP, LASTACCOUNT, HIGHACCOUNT, DONE FROM INTERESTRUN WHERE RUNDATE = ?";
+
+    private static final String SQL_START_RUN =
+            "INSERT INTO INTERESTRUN (RUNDATE, RATEBP, LASTACCOUNT, HIGHACCOUNT, ACCOUNTS, CENTS, DONE) " +
+            "SELECT ?, ?, -1, NVL(MAX(ACCOUNTNUMBER), -1), 0, 0, 0 FROM CUSTOMERACCOUNTS";
+
+    private static final String SQL_FINISH_RUN =
+            "UPDATE INTERESTRUN SET DONE = 1 WHERE RUNDATE = ?";
+
+    // Same floor as dailyInterestCents: FLOOR(balance * bp / 3650000).
+    private static final String SQL_CHUNK =
+            "DECLARE " +
+            "  v_bp NUMBER := ?; v_lo NUMBER := ?; v_hi NUMBER := ?; v_run DATE := ?; " +
+            "  TYPE t_nums IS TABLE OF NUMBER; " +
+            "  v_acct t_nums; v_cust t_nums; v_old t_nums; v_cents NUMBER := 0; " +
+            "BEGIN " +
+            "  SELECT ACCOUNTNUMBER, CUSTOMERNUMBER, ACCOUNTBALANCE " +
+            "  BULK COLLECT INTO v_acct, v_cust, v_old FROM CUSTOMERACCOUNTS " +
+            "  WHERE ACCOUNTNUMBER > v_lo AND ACCOUNTNUMBER <= v_hi AND ACCOUNTTYPE = 'SAVINGS' " +
+            "    AND ACCOUNTBALANCE * v_bp >= " + DAY_DIVISOR + " " +
+            "  FOR UPDATE; " +
+            "  FORALL i IN 1 .. v_acct.COUNT " +
+            "    UPDATE CUSTOMERACCOUNTS " +
+            "    SET ACCOUNTBALANCE = v_old(i) + FLOOR(v_old(i) * v_bp / " + DAY_DIVISOR + "), " +
+            "        ACCOUNTVERSION = ACCOUNTVERSION + 1 " +
+            "    WHERE ACCOUNTNUMBER = v_acct(i); " +
+            "  FORALL i IN 1 .. v_acct.COUNT " +
+            "    " + JdbcAccountRepository.HISTORY_INSERT + "VALUES (ACCOUNTHISTORY_SEQ.NEXTVAL, " +
+            "      v_cust(i), v_acct(i), 'INTEREST', FLOOR(v_old(i) * v_bp / " + DAY_DIVISOR + "), " +
+            "      v_old(i) + FLOOR(v_old(i) * v_bp / " + DAY_DIVISOR + "), 0, SYSTIMESTAMP); " +
+            "  FOR i IN 1 .. v_acct.COUNT LOOP " +
+            "    v_cents := v_cents + FLOOR(v_old(i) * v_bp / " + DAY_DIVISOR + "); " +
+            "  END LOOP; " +
+            "  UPDATE INTERESTRUN SET LASTACCOUNT = v_hi, ACCOUNTS = ACCOUNTS + v_acct.COUNT, " +
+            "    CENTS = CENTS + v_cents WHERE RUNDATE = v_run; " +
+            "  COMMIT; " +
+            "  ? := v_acct.COUNT; ? := v_cents; " +
+            "END;";
+
+    /** Store the in-memory sweep credits through. */
+    interface Ledger {
+        /**
+         * The run for {@code epochDay} as {annual bp, high slot, done flag, 1 if it already
+         * existed}; a new run covers the slots in use now.
+         */
+        int[] startInterestRun(int epochDay, int annualBasisPoints);
+
+        /**
+         * Credit one day's interest to the SAVINGS account in {@code slot} unless it was
+         * already credited for {@code epochDay} or later.
+         * @return the cents credited
+         */
+        long accrueInterest(int slot, int annualBasisPoints, int epochDay);
+
+        void finishInterestRun(int epochDay);
+    }
+
+    /** What one call to run did. */
+    public static final class Result {
+        public final LocalDate runDate;
+        public final long accountsCredited;
+        public final long interestCents;
+        public final long chunks;
+        /** True if earlier, interrupted attempts had already done part of this date. */
+        public final boolean resumed;
+        public final long elapsedNanos;
+
+        Result(LocalDate runDate, long accountsCredited, long interestCents, long chunks,
+               boolean resumed, long elapsedNanos) {
+            this.runDate = runDate;
+            this.accountsCredited = accountsCredited;
+            this.interestCents = interestCents;
+            this.chunks = chunks;
+            this.resumed = resumed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double accountsPerSecond() {
+            return elapsedNanos == 0 ? 0 : accountsCredited * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Interest %s: %,d accounts credited, %,d cents, %,d chunks in %.1f s (%,.0f accounts/s)%s",
+                    runDate, accountsCredited, interestCents, chunks, elapsedNanos / 1e9, accountsPerSecond(),
+                    resumed ? ", resumed" : "");
+        }
+    }
+
+    private final LocalDate runDate;
+    private final int annualBasisPoints;
+    private final int chunkAccounts;
+
+    // progress of the current call
+    private final AtomicLong chunksDone = new AtomicLong();
+    private final AtomicLong credited = new AtomicLong();
+    private final AtomicLong cents = new AtomicLong();
+    private final AtomicLong lastReport = new AtomicLong();
+    private volatile long chunksTotal;
+
+    public InterestAccrualJob(LocalDate runDate, int annualBasisPoints, int chunkAccounts) {
+        if (annualBasisPoints < 0) {
+            throw new IllegalArgumentException("annualBasisPoints cannot be negative");
+        }
+        if (chunkAccounts <= 0) {
+            throw new IllegalArgumentException("chunkAccounts must be positive");
+        }
+        this.runDate = runDate;
+        this.annualBasisPoints = annualBasisPoints;
+        this.chunkAccounts = chunkAccounts;
+    }
+
+    /** ATM_INTEREST_ANNUAL_BP (default 0, which the database run refuses) and ATM_INTEREST_CHUNK_ACCOUNTS (10000). */
+    public static InterestAccrualJob fromEnv(LocalDate runDate) {
+        return new InterestAccrualJob(runDate, EnvConfig.integer(ENV_ANNUAL_BP, 0),
+                EnvConfig.integer(ENV_CHUNK_ACCOUNTS, 10_000));
+    }
+
+    /** One day of {@code annualBasisPoints} on {@code balanceCents}, floored to the cent. */
+    public static long dailyInterestCents(long balanceCents, int annualBasisPoints) {
+        if (balanceCents <= 0 || annualBasisPoints <= 0) {
+            return 0;
+        }
+        // floor(balance * bp / DAY_DIVISOR), split so balance * bp cannot overflow
+        return balanceCents / DAY_DIVISOR * annualBasisPoints
+                + balanceCents % DAY_DIVISOR * annualBasisPoints / DAY_DIVISOR;
+    }
+
+    // ---- in memory -----------------------------------------------------------------
+
+    /** Sweep the ledger on ATM_INTEREST_PARALLELISM threads (default: all cores). */
+    public Result run(ConcurrentLedger ledger) {
+        return sweep(ledger);
+    }
+
+    public Result run(ConcurrentLedger ledger, ForkJoinPool pool) {
+        return sweep(ledger, pool);
+    }
+
+    /** Same as {@link #run(ConcurrentLedger)}, with every credit journaled. */
+    public Result run(JournaledAccountRepository repo) {
+        return sweep(repo);
+    }
+
+    public Result run(JournaledAccountRepository repo, ForkJoinPool pool) {
+        return sweep(repo, pool);
+    }
+
+    private Result sweep(Ledger ledger) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1,
+                EnvConfig.integer(ENV_PARALLELISM, Runtime.getRuntime().availableProcessors())));
+        try {
+            return sweep(ledger, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** A zero rate credits nothing and starts no run, so the real rate can still be applied. */
+    private Result sweep(Ledger ledger, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        resetProgress();
+        if (annualBasisPoints == 0) {
+            return finish(start, false);
+        }
+        int day = (int) runDate.toEpochDay();
+        int[] run = ledger.startInterestRun(day, annualBasisPoints);
+        if (run[0] != annualBasisPoints) {
+            throw new IllegalStateException("Interest for " + runDate
+                    + " was started at " + run[0] + " bp, not " + annualBasisPoints);
+        }
+        boolean resumed = run[3] == 1;
+        if (run[2] == 1) {
+            logger.info("Interest for " + runDate + " was already applied");
+            return finish(start, true);
+        }
+        int high = run[1];
+        int ranges = (int) ((high + (long) chunkAccounts - 1) / chunkAccounts);
+        chunksTotal = ranges;
+        if (ranges > 0) {
+            pool.invoke(new Sweep(ledger, day, high, 0, ranges));
+        }
+        ledger.finishInterestRun(day);
+        return finish(start, resumed);
+    }
+
+    /** Splits the range indexes [lo, hi) until one range is left, then credits it. */
+    private final class Sweep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // fork/join tasks are never serialized
+        private final transient Ledger ledger;
+        private final int day;
+        private final int slots;
+        private final int lo;
+        private final int hi;
+
+        Sweep(Ledger ledger, int day, int slots, int lo, int hi) {
+            this.ledger = ledger;
+            this.day = day;
+            this.slots = slots;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Sweep(ledger, day, slots, lo, mid), new Sweep(ledger, day, slots, mid, hi));
+                return;
+            }
+            int first = lo * chunkAccounts;
+            int end = (int) Math.min(slots, (long) first + chunkAccounts);
+            long rangeCredited = 0;
+            long rangeCents = 0;
+            try {
+                for (int slot = first; slot < end; slot++) {
+                    long interest = ledger.accrueInterest(slot, annualBasisPoints, day);
+                    if (interest > 0) {
+                        rangeCredited++;
+                        rangeCents += interest;
+                    }
+                }
+            } finally {
+                credited.addAndGet(rangeCredited);
+                cents.addAndGet(rangeCents);
+            }
+            chunksDone.incrementAndGet();
+            reportProgress();
+        }
+    }
+
+    // ---- JDBC ----------------------------------------------------------------------
+
+    /**
+     * Refuses a zero rate: the run row would record 0 bp for the date and the real rate
+     * could then not be applied to it.
+     */
+    public Result run(OracleDBUtil db) {
+        if (annualBasisPoints == 0) {
+            throw new IllegalStateException("No interest rate set; set " + ENV_ANNUAL_BP + " before running");
+        }
+        long start = System.nanoTime();
+        resetProgress();
+        Date date = Date.valueOf(runDate);
+        try (Connection conn = db.getConnection()) {
+            long[] run = findOrStartRun(conn, date);
+            long last = run[0];
+            long high = run[1];
+            boolean resumed = last >= 0;
+            if (run[2] == 1) {
+                logger.info("Interest for " + runDate + " was already applied");
+                return finish(start, true);
+            }
+            chunksTotal = Math.max(0, (high - last + chunkAccounts - 1) / chunkAccounts);
+
+            try (CallableStatement cs = conn.prepareCall(SQL_CHUNK)) {
+                while (last < high) {
+                    long upTo = Math.min(high, last + chunkAccounts);
+                    cs.setInt(1, annualBasisPoints);
+                    cs.setLong(2, last);
+                    cs.setLong(3, upTo);
+                    cs.setDate(4, date);
+                    cs.registerOutParameter(5, Types.INTEGER);
+                    cs.registerOutParameter(6, Types.NUMERIC);
+                    cs.execute();
+
+                    credited.addAndGet(cs.getInt(5));
+                    cents.addAndGet(cs.getLong(6));
+                    chunksDone.incrementAndGet();
+                    last = upTo;
+                    reportProgress();
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(SQL_FINISH_RUN)) {
+                ps.setDate(1, date);
+                ps.executeUpdate();
+            }
+            return finish(start, resumed);
+        } catch (SQLException ex) {
+            throw new RuntimeException("Interest run for " + runDate + " failed; run it again to resume", ex);
+        }
+    }
+
+    /** {last account done, highest account in the run, done flag}; starts the run if new. */
+    private long[] findOrStartRun(Connection conn, Date date) throws SQLException {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try (PreparedStatement ps = conn.prepareStatement(SQL_FIND_RUN)) {
+                ps.setDate(1, date);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        if (rs.getInt(1) != annualBasisPoints) {
+                            throw new IllegalStateException("Interest for " + runDate
+                                    + " was started at " + rs.getInt(1) + " bp, not " + annualBasisPoints);
+                        }
+                        return new long[]{rs.getLong(2), rs.getLong(3), rs.getInt(4)};
+                    }
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(SQL_START_RUN)) {
+                ps.setDate(1, date);
+                ps.setInt(2, annualBasisPoints);
+                ps.executeUpdate();
+            } catch (SQLIntegrityConstraintViolationException startedElsewhere) {
+                // another job inserted the row since we looked; read theirs
+            }
+        }
+        throw new IllegalStateException("Could not start the interest run for " + runDate);
+    }
+
+    // ---- progress ------------------------------------------------------------------
+
+    private void resetProgress() {
+        chunksDone.set(0);
+        credited.set(0);
+        cents.set(0);
+        chunksTotal = 0;
+    }
+
+    private void reportProgress() {
+        long now = System.nanoTime();
+        long last = lastReport.get();
+        if (now - last >= 1_000_000_000L && lastReport.compareAndSet(last, now)) {
+            logger.info(String.format("Interest %s: %,d/%,d chunks, %,d accounts credited",
+                    runDate, chunksDone.get(), chunksTotal, credited.get()));
+        }
+    }
+
+    private Result finish(long start, boolean resumed) {
+        Result result = new Result(runDate, credited.get(), cents.get(), chunksDone.get(), resumed,
+                System.nanoTime() - start);
+        logger.info(result.toString());
+        return result;
+    }
+
+    /** Applies interest for today (or the date given as yyyy-mm-dd) to the production database. */
+    public static void main(String[] args) throws SQLException {
+        LocalDate date = args.length > 0 ? LocalDate.parse(args[0]) : LocalDate.now();
+        System.out.println(fromEnv(date).run(new OracleDBUtil()));
+    }
+}
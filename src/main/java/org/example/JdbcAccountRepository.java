@@ -1,47 +1,223 @@
 package org.example;
 
+import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 import org.example.AccountRepository;
 /**
  * JDBC-backed implementation of account persistence.
+ * <p>
+ * Queries go to {@link OracleDBUtil#getReadConnection} (a replica or low-priority
+ * service, when configured) except for customers who changed something within the last
+ * DB_READ_STALENESS_MILLIS: their reads stay on the primary so they see their own writes
+ * even if the read side lags that much behind. Payee lookups ({@link #findByAccountNumber})
+ * always use the primary, since a lagging replica would reject an account just opened.
+ * <p>
+ * Every statement is given DB_QUERY_TIMEOUT_SECONDS (default 2), after which the driver
+ * cancels it in the database and the call fails with {@link DatabaseUnavailableException}.
+ * Keep it below DB_CALL_DEADLINE_MILLIS so the deadline in
+ * {@link ResilientAccountRepository} is only a backstop.
  */
 public class JdbcAccountRepository implements AccountRepository {
 
+    // Every balance write also bumps ACCOUNTVERSION, so save() can compare-and-set:
+    //   ALTER TABLE CUSTOMERACCOUNTS ADD (ACCOUNTVERSION NUMBER DEFAULT 0 NOT NULL);
     private static final String SQL_FIND_ALL =
-            "SELECT ACCOUNTNUMBER, ACCOUNTTYPE, ACCOUNTBALANCE " +
+            "SELECT ACCOUNTNUMBER, ACCOUNTTYPE, ACCOUNTBALANCE, ACCOUNTVERSION " +
             "FROM CUSTOMERACCOUNTS WHERE CUSTOMERNUMBER = ? ORDER BY ACCOUNTNUMBER";
 
     private static final String SQL_FIND_ONE =
-            "SELECT ACCOUNTNUMBER, ACCOUNTTYPE, ACCOUNTBALANCE " +
+            "SELECT ACCOUNTNUMBER, ACCOUNTTYPE, ACCOUNTBALANCE, ACCOUNTVERSION " +
             "FROM CUSTOMERACCOUNTS WHERE CUSTOMERNUMBER = ? AND ACCOUNTNUMBER = ?";
 
-    private static final String SQL_UPDATE_BALANCE =
-            "UPDATE CUSTOMERACCOUNTS SET ACCOUNTBALANCE = ? " +
-            "WHERE CUSTOMERNUMBER = ? AND ACCOUNTNUMBER = ?";
+    // status 4 if the row exists at another version
+    private static final String SQL_SAVE =
+            "DECLARE " +
+            "  v_cents NUMBER := ?; v_customer NUMBER := ?; v_account NUMBER := ?; v_version NUMBER := ?; " +
+            "  v_new NUMBER; v_status NUMBER := 0; " +
+            "BEGIN " +
+            "  UPDATE CUSTOMERACCOUNTS SET ACCOUNTBALANCE = v_cents, ACCOUNTVERSION = ACCOUNTVERSION + 1 " +
+            "  WHERE CUSTOMERNUMBER = v_customer AND ACCOUNTNUMBER = v_account AND ACCOUNTVERSION = v_version " +
+            "  RETURNING ACCOUNTVERSION INTO v_new; " +
+            "  IF SQL%ROWCOUNT = 0 THEN " +
+            "    SELECT DECODE(COUNT(*), 0, 1, 4) INTO v_status FROM CUSTOMERACCOUNTS " +
+            "    WHERE CUSTOMERNUMBER = v_customer AND ACCOUNTNUMBER = v_account; " +
+            "  END IF; " +
+            "  ? := v_status; ? := v_new; " +
+            "END;";
+
+    private static final String SQL_FIND_BY_NUMBER =
+            "SELECT CUSTOMERNUMBER, ACCOUNTNUMBER, ACCOUNTTYPE, ACCOUNTBALANCE, ACCOUNTVERSION " +
+            "FROM CUSTOMERACCOUNTS WHERE ACCOUNTNUMBER = ?";
 
     private static final String SQL_INSERT =
             "INSERT INTO CUSTOMERACCOUNTS (CUSTOMERNUMBER, ACCOUNTNUMBER, ACCOUNTTYPE, ACCOUNTBALANCE) " +
             "VALUES (?, ?, ?, ?)";
 
+    // Balance mutations run as single PL/SQL blocks: one round trip, one transaction,
+    // and the new balances come back through RETURNING ... INTO.
+    private static final int STATUS_OK = 0;
+    private static final int STATUS_NOT_FOUND = 1;
+    private static final int STATUS_INSUFFICIENT_FUNDS = 2;
+    private static final int STATUS_DESTINATION_NOT_FOUND = 3;
+    private static final int STATUS_VERSION_CONFLICT = 4;
+
+    // Every balance change also appends to ACCOUNTHISTORY inside the same block, so the
+    // statement can never disagree with the balance:
+    //   CREATE SEQUENCE ACCOUNTHISTORY_SEQ CACHE 1000;
+    //   CREATE TABLE ACCOUNTHISTORY (
+    //     HISTORYID NUMBER PRIMARY KEY, CUSTOMERNUMBER NUMBER NOT NULL, ACCOUNTNUMBER NUMBER NOT NULL,
+    //     KIND VARCHAR2(12) NOT NULL, AMOUNT NUMBER NOT NULL, BALANCEAFTER NUMBER NOT NULL,
+    //     COUNTERPARTY NUMBER NOT NULL, CREATEDAT TIMESTAMP NOT NULL);
+    //   CREATE INDEX ACCOUNTHISTORY_PAGE_IX ON ACCOUNTHISTORY (ACCOUNTNUMBER, HISTORYID);
+    static final String HISTORY_INSERT =
+            "INSERT INTO ACCOUNTHISTORY (HISTORYID, CUSTOMERNUMBER, ACCOUNTNUMBER, KIND, AMOUNT, " +
+            "BALANCEAFTER, COUNTERPARTY, CREATEDAT) ";
+
+    private static final String SQL_DEPOSIT =
+            "DECLARE " +
+            "  v_cents NUMBER := ?; v_customer NUMBER := ?; v_account NUMBER := ?; v_balance NUMBER; " +
+            "BEGIN " +
+            "  UPDATE CUSTOMERACCOUNTS SET ACCOUNTBALANCE = ACCOUNTBALANCE + v_cents, ACCOUNTVERSION = ACCOUNTVERSION + 1 " +
+            "  WHERE CUSTOMERNUMBER = v_customer AND ACCOUNTNUMBER = v_account " +
+            "  RETURNING ACCOUNTBALANCE INTO v_balance; " +
+            "  IF SQL%ROWCOUNT > 0 THEN " +
+            "    " + HISTORY_INSERT + "VALUES (ACCOUNTHISTORY_SEQ.NEXTVAL, v_customer, v_account, " +
+            "      'DEPOSIT', v_cents, v_balance, 0, SYSTIMESTAMP); " +
+            "  END IF; " +
+            "  ? := v_balance; " +
+            "END;";
+
+    private static final String SQL_WITHDRAW =
+            "DECLARE " +
+            "  v_cents NUMBER := ?; v_customer NUMBER := ?; v_account NUMBER := ?; " +
+            "  v_balance NUMBER; v_status NUMBER := 0; " +
+            "BEGIN " +
+            "  UPDATE CUSTOMERACCOUNTS SET ACCOUNTBALANCE = ACCOUNTBALANCE - v_cents, ACCOUNTVERSION = ACCOUNTVERSION + 1 " +
+            "  WHERE CUSTOMERNUMBER = v_customer AND ACCOUNTNUMBER = v_account AND ACCOUNTBALANCE >= v_cents " +
+            "  RETURNING ACCOUNTBALANCE INTO v_balance; " +
+            "  IF SQL%ROWCOUNT = 0 THEN " +
+            "    SELECT DECODE(COUNT(*), 0, 1, 2) INTO v_status FROM CUSTOMERACCOUNTS " +
+            "    WHERE CUSTOMERNUMBER = v_customer AND ACCOUNTNUMBER = v_account; " +
+            "  ELSE " +
+            "    " + HISTORY_INSERT + "VALUES (ACCOUNTHISTORY_SEQ.NEXTVAL, v_customer, v_account, " +
+            "      'WITHDRAWAL', v_cents, v_balance, 0, SYSTIMESTAMP); " +
+            "  END IF; " +
+            "  ? := v_status; ? := v_balance; " +
+            "END;";
+
+    // Rows are touched in account-number order (lower first) so opposite-direction
+    // transfers between the same two accounts cannot deadlock each other. With v_any = 1
+    // the destination may belong to any customer (peer payments); it is found through
+    // the ACCOUNTNUMBER primary key either way.
+    private static final String SQL_TRANSFER =
+            "DECLARE " +
+            "  v_cents NUMBER := ?; v_customer NUMBER := ?; v_from NUMBER := ?; v_to NUMBER := ?; " +
+            "  v_any NUMBER := ?; v_to_customer NUMBER; " +
+            "  v_from_balance NUMBER; v_to_balance NUMBER; v_status NUMBER := 0; " +
+            "BEGIN " +
+            "  IF v_to < v_from THEN " +
+            "    UPDATE CUSTOMERACCOUNTS SET ACCOUNTBALANCE = ACCOUNTBALANCE + v_cents, ACCOUNTVERSION = ACCOUNTVERSION + 1 " +
+            "    WHERE ACCOUNTNUMBER = v_to AND (v_any = 1 OR CUSTOMERNUMBER = v_customer) " +
+            "    RETURNING ACCOUNTBALANCE, CUSTOMERNUMBER INTO v_to_balance, v_to_customer; " +
+            "    IF SQL%ROWCOUNT = 0 THEN v_status := 3; END IF; " +
+            "  END IF; " +
+            "  IF v_status = 0 THEN " +
+            "    UPDATE CUSTOMERACCOUNTS SET ACCOUNTBALANCE = ACCOUNTBALANCE - v_cents, ACCOUNTVERSION = ACCOUNTVERSION + 1 " +
+            "    WHERE CUSTOMERNUMBER = v_customer AND ACCOUNTNUMBER = v_from AND ACCOUNTBALANCE >= v_cents " +
+            "    RETURNING ACCOUNTBALANCE INTO v_from_balance; " +
+            "    IF SQL%ROWCOUNT = 0 THEN " +
+            "      SELECT DECODE(COUNT(*), 0, 1, 2) INTO v_status FROM CUSTOMERACCOUNTS " +
+            "      WHERE CUSTOMERNUMBER = v_customer AND ACCOUNTNUMBER = v_from; " +
+            "    END IF; " +
+            "  END IF; " +
+            "  IF v_status = 0 AND v_to > v_from THEN " +
+            "    UPDATE CUSTOMERACCOUNTS SET ACCOUNTBALANCE = ACCOUNTBALANCE + v_cents, ACCOUNTVERSION = ACCOUNTVERSION + 1 " +
+            "    WHERE ACCOUNTNUMBER = v_to AND (v_any = 1 OR CUSTOMERNUMBER = v_customer) " +
+            "    RETURNING ACCOUNTBALANCE, CUSTOMERNUMBER INTO v_to_balance, v_to_customer; " +
+            "    IF SQL%ROWCOUNT = 0 THEN v_status := 3; END IF; " +
+            "  END IF; " +
+            "  IF v_status = 0 THEN " +
+            "    " + HISTORY_INSERT + "VALUES (ACCOUNTHISTORY_SEQ.NEXTVAL, v_customer, v_from, " +
+            "      'TRANSFER_OUT', v_cents, v_from_balance, v_to, SYSTIMESTAMP); " +
+            "    " + HISTORY_INSERT + "VALUES (ACCOUNTHISTORY_SEQ.NEXTVAL, v_to_customer, v_to, " +
+            "      'TRANSFER_IN', v_cents, v_to_balance, v_from, SYSTIMESTAMP); " +
+            "    COMMIT; " +
+            "  ELSE ROLLBACK; END IF; " +
+            "  ? := v_status; ? := v_from_balance; ? := v_to_balance; ? := v_to_customer; " +
+            "END;";
+
+    // Keyset paging: one descending range scan of ACCOUNTHISTORY_PAGE_IX starting just
+    // below the cursor, so page 1000 costs the same as page 1.
+    private static final String SQL_HISTORY_PAGE =
+            "SELECT HISTORYID, KIND, AMOUNT, BALANCEAFTER, COUNTERPARTY, CREATEDAT " +
+            "FROM ACCOUNTHISTORY WHERE ACCOUNTNUMBER = ? AND HISTORYID < ? AND CUSTOMERNUMBER = ? " +
+            "ORDER BY HISTORYID DESC FETCH FIRST ? ROWS ONLY";
+
+    // One round trip returns a whole block of sequence values.
+    private static final String SQL_RESERVE_ACCOUNT_NUMBERS =
+            "SELECT CUSTOMERACCOUNTS_SEQ.NEXTVAL FROM DUAL CONNECT BY LEVEL <= ?";
+
+    static final String ENV_ACCOUNT_NUMBER_BLOCK = "DB_ACCOUNT_NUMBER_BLOCK";
+    static final String ENV_READ_STALENESS_MILLIS = "DB_READ_STALENESS_MILLIS";
+    static final String ENV_QUERY_TIMEOUT_SECONDS = "DB_QUERY_TIMEOUT_SECONDS";
+
+    // customers hashed onto stripes holding their last write time; a collision only
+    // sends a few extra reads to the primary
+    private static final int WRITE_STRIPES = 4096;
+
+    // rows sent per executeBatch inside one createAll transaction
+    private static final int INSERT_BATCH_ROWS = 1000;
+
     private final OracleDBUtil db;
+    private final WriteBehindBalanceWriter writeBehind;
+    private final AccountNumberAllocator accountNumbers;
+    private final long stalenessNanos;
+    private final int queryTimeoutSeconds;
+    private final AtomicLongArray lastWriteNanos = new AtomicLongArray(WRITE_STRIPES);
 
     public JdbcAccountRepository(OracleDBUtil db) {
+        this(db, null);
+    }
+
+    /** @param writeBehind batches {@link #depositDeferred} calls; null applies them immediately */
+    JdbcAccountRepository(OracleDBUtil db, WriteBehindBalanceWriter writeBehind) {
         this.db = Objects.requireNonNull(db, "OracleDBUtil is required");
+        this.writeBehind = writeBehind;
+        this.accountNumbers = new AccountNumberAllocator(this::reserveAccountNumbers,
+                EnvConfig.integer(ENV_ACCOUNT_NUMBER_BLOCK, 50));
+        this.stalenessNanos = TimeUnit.MILLISECONDS.toNanos(EnvConfig.integer(ENV_READ_STALENESS_MILLIS, 5_000));
+        this.queryTimeoutSeconds = Math.max(0, EnvConfig.integer(ENV_QUERY_TIMEOUT_SECONDS, 2));
+        long longAgo = System.nanoTime() - stalenessNanos - 1;
+        for (int i = 0; i < WRITE_STRIPES; i++) {
+            lastWriteNanos.set(i, longAgo);
+        }
+    }
+
+    /** Statements worth preparing on every pooled connection at startup. */
+    static List<String> hotSql() {
+        return List.of(SQL_FIND_ALL, SQL_FIND_ONE, SQL_FIND_BY_NUMBER, SQL_DEPOSIT, SQL_WITHDRAW, SQL_TRANSFER,
+                SQL_HISTORY_PAGE);
     }
 
     @Override
     public List<Account> findAllByCustomer(int customerNumber) {
         List<Account> accounts = new ArrayList<>();
-        try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SQL_FIND_ALL)) {
+        try (Connection conn = readConnection(customerNumber);
+             PreparedStatement ps = timed(conn.prepareStatement(SQL_FIND_ALL))) {
             ps.setInt(1, customerNumber);
 
             try (ResultSet rs = ps.executeQuery()) {
@@ -50,15 +226,15 @@ public class JdbcAccountRepository implements AccountRepository {
                 }
             }
         } catch (SQLException ex) {
-            throw new RuntimeException("Failed to load accounts for customer " + customerNumber, ex);
+            throw failed("Failed to load accounts for customer " + customerNumber, ex);
         }
         return accounts;
     }
 
     @Override
     public Account findOneForCustomer(int customerNumber, int accountNumber) {
-        try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SQL_FIND_ONE)) {
+        try (Connection conn = readConnection(customerNumber);
+             PreparedStatement ps = timed(conn.prepareStatement(SQL_FIND_ONE))) {
             ps.setInt(1, customerNumber);
             ps.setInt(2, accountNumber);
 
@@ -68,7 +244,24 @@ public class JdbcAccountRepository implements AccountRepository {
                 }
             }
         } catch (SQLException ex) {
-            throw new RuntimeException("Failed to load account " + accountNumber + " for customer " + customerNumber, ex);
+            throw failed("Failed to load account " + accountNumber + " for customer " + customerNumber, ex);
+        }
+        return null;
+    }
+
+    @Override
+    public Account findByAccountNumber(int accountNumber) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = timed(conn.prepareStatement(SQL_FIND_BY_NUMBER))) {
+            ps.setInt(1, accountNumber);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return mapAccount(rs.getInt("CUSTOMERNUMBER"), rs);
+                }
+            }
+        } catch (SQLException ex) {
+            throw failed("Failed to load account " + accountNumber, ex);
         }
         return null;
     }
@@ -77,69 +270,277 @@ public class JdbcAccountRepository implements AccountRepository {
     public void save(Account account) {
         Objects.requireNonNull(account, "account is required");
         try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SQL_UPDATE_BALANCE)) {
-            ps.setLong(1, toCents(account.getAccountBalance()));
-            ps.setInt(2, account.getCustomerNumber());
-            ps.setInt(3, account.getAccountNumber());
-            ps.executeUpdate();
+             CallableStatement cs = timed(conn.prepareCall(SQL_SAVE))) {
+            cs.setLong(1, account.getBalanceCents());
+            cs.setInt(2, account.getCustomerNumber());
+            cs.setInt(3, account.getAccountNumber());
+            cs.setLong(4, account.getVersion());
+            cs.registerOutParameter(5, Types.INTEGER);
+            cs.registerOutParameter(6, Types.NUMERIC);
+            cs.execute();
+            wrote(account.getCustomerNumber());
+
+            switch (cs.getInt(5)) {
+                case STATUS_OK:
+                    account.setVersion(cs.getLong(6));
+                    return;
+                case STATUS_NOT_FOUND:
+                    throw new IllegalArgumentException("Account not found for this customer");
+                case STATUS_VERSION_CONFLICT:
+                    throw new AccountConflictException("Account " + account.getAccountNumber()
+                            + " changed since it was read (version " + account.getVersion() + ")");
+                default:
+                    throw new IllegalStateException("Save was not applied");
+            }
         } catch (SQLException ex) {
-            throw new RuntimeException("Failed to persist account " + account.getAccountNumber(), ex);
+            throw failed("Failed to persist account " + account.getAccountNumber(), ex);
         }
     }
 
     @Override
     public int create(int customerNumber, AccountType type, long initialCents) {
         Objects.requireNonNull(type, "type is required");
+        int accountNumber = accountNumbers.next();
         try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SQL_INSERT)) {
-            int accountNumber = allocateAccountNumber(conn);
-
+             PreparedStatement ps = timed(conn.prepareStatement(SQL_INSERT))) {
             ps.setInt(1, customerNumber);
             ps.setInt(2, accountNumber);
             ps.setString(3, type.name());
             ps.setLong(4, initialCents);
             ps.executeUpdate();
+            wrote(customerNumber);
 
             return accountNumber;
         } catch (SQLException ex) {
-            throw new RuntimeException("Failed to create account for customer " + customerNumber, ex);
+            throw failed("Failed to create account for customer " + customerNumber, ex);
         }
     }
 
-    private Account mapAccount(int customerNumber, ResultSet rs) throws SQLException {
+    @Override
+    public int[] createAll(List<NewAccount> batch) {
+        if (batch.isEmpty()) {
+            return new int[0];
+        }
+        int[] numbers = accountNumbers.next(batch.size());
+        try (Connection conn = db.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = timed(conn.prepareStatement(SQL_INSERT))) {
+                for (int i = 0; i < numbers.length; i++) {
+                    NewAccount a = batch.get(i);
+                    ps.setInt(1, a.customerNumber);
+                    ps.setInt(2, numbers[i]);
+                    ps.setString(3, a.type.name());
+                    ps.setLong(4, a.initialCents);
+                    ps.addBatch();
+                    if ((i + 1) % INSERT_BATCH_ROWS == 0) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+                conn.commit();
+                for (NewAccount a : batch) {
+                    wrote(a.customerNumber);
+                }
+                return numbers;
+            } catch (SQLException | RuntimeException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException ex) {
+            throw failed("Failed to create " + batch.size() + " accounts", ex);
+        }
+    }
+
+    @Override
+    public long deposit(int customerNumber, int accountNumber, long cents) {
+        try (Connection conn = db.getConnection();
+             CallableStatement cs = timed(conn.prepareCall(SQL_DEPOSIT))) {
+            cs.setLong(1, cents);
+            cs.setInt(2, customerNumber);
+            cs.setInt(3, accountNumber);
+            cs.registerOutParameter(4, Types.NUMERIC);
+            cs.execute();
+            wrote(customerNumber);
+
+            long newCents = cs.getLong(4);
+            if (cs.wasNull()) {
+                throw new IllegalArgumentException("Account not found for this customer");
+            }
+            return newCents;
+        } catch (SQLException ex) {
+            throw failed("Failed to deposit into account " + accountNumber, ex);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> depositDeferred(int customerNumber, int accountNumber, long cents) {
+        if (writeBehind == null) {
+            return AccountRepository.super.depositDeferred(customerNumber, accountNumber, cents);
+        }
+        return writeBehind.addDelta(customerNumber, accountNumber, cents)
+                .whenComplete((ignored, ex) -> wrote(customerNumber));
+    }
+
+    @Override
+    public long withdraw(int customerNumber, int accountNumber, long cents) {
+        try (Connection conn = db.getConnection();
+             CallableStatement cs = timed(conn.prepareCall(SQL_WITHDRAW))) {
+            cs.setLong(1, cents);
+            cs.setInt(2, customerNumber);
+            cs.setInt(3, accountNumber);
+            cs.registerOutParameter(4, Types.INTEGER);
+            cs.registerOutParameter(5, Types.NUMERIC);
+            cs.execute();
+            wrote(customerNumber);
+
+            switch (cs.getInt(4)) {
+                case STATUS_OK:
+                    return cs.getLong(5);
+                case STATUS_NOT_FOUND:
+                    throw new IllegalArgumentException("Account not found for this customer");
+                default:
+                    throw new IllegalStateException("Insufficient funds or invalid amount");
+            }
+        } catch (SQLException ex) {
+            throw failed("Failed to withdraw from account " + accountNumber, ex);
+        }
+    }
+
+    @Override
+    public AccountService.TransferResult transfer(int customerNumber, int fromAccount, int toAccount, long cents) {
+        return transfer(customerNumber, fromAccount, toAccount, cents, false);
+    }
+
+    @Override
+    public AccountService.TransferResult transferToAccount(int customerNumber, int fromAccount, int toAccount, long cents) {
+        return transfer(customerNumber, fromAccount, toAccount, cents, true);
+    }
+
+    private AccountService.TransferResult transfer(int customerNumber, int fromAccount, int toAccount, long cents,
+                                                   boolean anyDestinationOwner) {
+        try (Connection conn = db.getConnection();
+             CallableStatement cs = timed(conn.prepareCall(SQL_TRANSFER))) {
+            cs.setLong(1, cents);
+            cs.setInt(2, customerNumber);
+            cs.setInt(3, fromAccount);
+            cs.setInt(4, toAccount);
+            cs.setInt(5, anyDestinationOwner ? 1 : 0);
+            cs.registerOutParameter(6, Types.INTEGER);
+            cs.registerOutParameter(7, Types.NUMERIC);
+            cs.registerOutParameter(8, Types.NUMERIC);
+            cs.registerOutParameter(9, Types.NUMERIC);
+            cs.execute();
+            wrote(customerNumber);
+
+            switch (cs.getInt(6)) {
+                case STATUS_OK:
+                    int toCustomer = cs.getInt(9);
+                    wrote(toCustomer);
+                    return AccountService.TransferResult.ofCents(cs.getLong(7), cs.getLong(8), toCustomer);
+                case STATUS_NOT_FOUND:
+                    throw new IllegalArgumentException("Source account not found for this customer");
+                case STATUS_INSUFFICIENT_FUNDS:
+                    throw new IllegalStateException("Insufficient funds");
+                case STATUS_DESTINATION_NOT_FOUND:
+                    throw new IllegalArgumentException(anyDestinationOwner
+                            ? "Destination account not found"
+                            : "Destination account not found for this customer");
+                default:
+                    throw new IllegalStateException("Transfer was not applied");
+            }
+        } catch (SQLException ex) {
+            throw failed("Failed to transfer from account " + fromAccount + " to " + toAccount, ex);
+        }
+    }
+
+    @Override
+    public List<AccountTransaction> history(int customerNumber, int accountNumber, long beforeId, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        List<AccountTransaction> page = new ArrayList<>(limit);
+        try (Connection conn = readConnection(customerNumber);
+             PreparedStatement ps = timed(conn.prepareStatement(SQL_HISTORY_PAGE))) {
+            ps.setInt(1, accountNumber);
+            ps.setLong(2, beforeId);
+            ps.setInt(3, customerNumber);
+            ps.setInt(4, limit);
+            ps.setFetchSize(limit);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    page.add(new AccountTransaction(rs.getLong(1), accountNumber,
+                            AccountTransaction.Kind.valueOf(rs.getString(2).trim()),
+                            rs.getLong(3), rs.getLong(4), rs.getInt(5), rs.getTimestamp(6).getTime()));
+                }
+            }
+        } catch (SQLException ex) {
+            throw failed("Failed to load history for account " + accountNumber, ex);
+        }
+        return page;
+    }
+
+    // ---- timeouts ------------------------------------------------------------------
+
+    private <S extends Statement> S timed(S statement) throws SQLException {
+        statement.setQueryTimeout(queryTimeoutSeconds);
+        return statement;
+    }
+
+    /** A cancelled statement was rolled back, so the caller may safely try again. */
+    private static RuntimeException failed(String message, SQLException ex) {
+        if (ex instanceof SQLTimeoutException) {
+            return new DatabaseUnavailableException(
+                    "The bank system did not respond in time and the operation was cancelled. Please try again.", ex);
+        }
+        return new RuntimeException(message, ex);
+    }
+
+    // ---- read routing --------------------------------------------------------------
+
+    /** The read pool, unless this customer wrote recently enough that it may lag behind. */
+    private Connection readConnection(int customerNumber) throws SQLException {
+        long last = lastWriteNanos.get(writeStripe(customerNumber));
+        return System.nanoTime() - last <= stalenessNanos ? db.getConnection() : db.getReadConnection();
+    }
+
+    private void wrote(int customerNumber) {
+        lastWriteNanos.set(writeStripe(customerNumber), System.nanoTime());
+    }
+
+    private static int writeStripe(int customerNumber) {
+        return (customerNumber * 0x9E3779B9 >>> 16) & (WRITE_STRIPES - 1);
+    }
+
+    static Account mapAccount(int customerNumber, ResultSet rs) throws SQLException {
         int accountNumber = rs.getInt("ACCOUNTNUMBER");
         String typeText = rs.getString("ACCOUNTTYPE");
         if (typeText == null) {
             throw new SQLException("Account type was null for account " + accountNumber);
         }
         AccountType type = AccountType.valueOf(typeText.trim().toUpperCase(Locale.ROOT));
-        long balanceCents = rs.getLong("ACCOUNTBALANCE");
-        double balance = balanceCents / 100.0;
-        return new Account(customerNumber, accountNumber, type, balance);
+        return Account.ofCents(customerNumber, accountNumber, type, rs.getLong("ACCOUNTBALANCE"),
+                rs.getLong("ACCOUNTVERSION"));
     }
 
-    private int allocateAccountNumber(Connection conn) throws SQLException {
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT CUSTOMERACCOUNTS_SEQ.NEXTVAL FROM DUAL")) {
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-        } catch (SQLException seqEx) {
-            try (Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT NVL(MAX(ACCOUNTNUMBER), 0) + 1 FROM CUSTOMERACCOUNTS")) {
-                if (rs.next()) {
-                    return rs.getInt(1);
+    private int[] reserveAccountNumbers(int count) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = timed(conn.prepareStatement(SQL_RESERVE_ACCOUNT_NUMBERS))) {
+            ps.setInt(1, count);
+            ps.setFetchSize(count);
+            int[] numbers = new int[count];
+            int n = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next() && n < count) {
+                    numbers[n++] = rs.getInt(1);
                 }
-            } catch (SQLException maxEx) {
-                seqEx.addSuppressed(maxEx);
-                throw seqEx;
             }
-            throw seqEx;
+            return n == count ? numbers : Arrays.copyOf(numbers, n);
+        } catch (SQLException ex) {
+            throw failed("Failed to reserve account numbers from CUSTOMERACCOUNTS_SEQ", ex);
         }
-        throw new SQLException("Unable to allocate new account number");
-    }
-
-    private long toCents(double amount) {
-        return Math.round(amount * 100.0);
     }
 }
@@ -4,6 +4,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -20,6 +21,11 @@ public class JdbcAuthenticationRepository implements OptionMenu.AuthenticationRe
         this.db = Objects.requireNonNull(db, "OracleDBUtil is required");
     }
 
+    /** Statements worth preparing on every pooled connection at startup. */
+    static List<String> hotSql() {
+        return List.of(SQL_VERIFY);
+    }
+
     @Override
     public boolean verify(int customerNumber, int pin) {
         try (Connection conn = db.getConnection();
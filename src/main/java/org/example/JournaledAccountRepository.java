@@ -0,0 +1,452 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link ConcurrentLedger} that survives restarts: every create, deposit, withdrawal,
+ * transfer and save is appended to a memory-mapped {@link TransactionJournal} once the
+ * ledger has accepted it, and {@link #open} rebuilds the ledger from the latest
+ * {@link LedgerSnapshot} plus the journal segments written after it.
+ * <p>
+ * Deposits, withdrawals and transfers are journaled as signed deltas, which commute, so
+ * concurrent operations may land in the journal in any order. {@code save} writes an
+ * absolute balance and therefore runs alone (write lock), as does the snapshot cut.
+ * {@link InterestAccrualJob} runs through this class too: each credit is journaled with
+ * its run date, and so are the start and end of each run, so a restarted run neither
+ * loses nor repeats credits.
+ * <p>
+ * A snapshot is taken in the background whenever the current segment reaches
+ * {@code ATM_JOURNAL_SNAPSHOT_RECORDS} records: writers pause only while the accounts are
+ * copied to arrays and a new segment is started; the file is written after they resume.
+ * The mapped journal is forced to disk every {@code ATM_JOURNAL_SYNC_MS} milliseconds,
+ * which bounds what a power loss (not a process crash) can lose.
+ */
+public final class JournaledAccountRepository implements AccountRepository, InterestAccrualJob.Ledger, AutoCloseable {
+    private static final Logger logger = Logger.getLogger(JournaledAccountRepository.class.getName());
+
+    static final String ENV_DIR = "ATM_JOURNAL_DIR";
+    static final String ENV_SNAPSHOT_RECORDS = "ATM_JOURNAL_SNAPSHOT_RECORDS";
+    static final String ENV_SYNC_MILLIS = "ATM_JOURNAL_SYNC_MS";
+
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final long REGION_BYTES = 64L << 20;
+    private static final AccountType[] TYPES = AccountType.values();
+
+    private final Path dir;
+    private final ConcurrentLedger ledger;
+    private final long snapshotEveryRecords;
+    private final ScheduledExecutorService background;
+
+    // mutations hold the read lock; save() and the snapshot cut hold the write lock
+    private final ReentrantReadWriteLock cut = new ReentrantReadWriteLock();
+    private final Object snapshotLock = new Object();
+    private volatile TransactionJournal journal;
+    private long generation; // guarded by the write lock
+    private volatile boolean closed;
+
+    private JournaledAccountRepository(Path dir, ConcurrentLedger ledger, long generation,
+                                       long snapshotEveryRecords, long syncIntervalMillis) throws IOException {
+        this.dir = dir;
+        this.ledger = ledger;
+        this.generation = generation;
+        this.snapshotEveryRecords = snapshotEveryRecords;
+        this.journal = TransactionJournal.create(journalFile(dir, generation), REGION_BYTES);
+        this.background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "account-journal");
+            t.setDaemon(true);
+            return t;
+        });
+        if (syncIntervalMillis > 0) {
+            background.scheduleWithFixedDelay(() -> journal.force(),
+                    syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Recover from {@code dir} (created if missing) with settings from the environment. */
+    public static JournaledAccountRepository open(Path dir) throws IOException {
+        return open(dir, EnvConfig.integer(ENV_SNAPSHOT_RECORDS, 5_000_000),
+                EnvConfig.integer(ENV_SYNC_MILLIS, 1_000));
+    }
+
+    /**
+     * Recover from {@code dir}: load {@code snapshot.bin} if present, then replay every
+     * journal segment from the snapshot's generation on, then start a fresh segment.
+     */
+    public static JournaledAccountRepository open(Path dir, long snapshotEveryRecords, long syncIntervalMillis)
+            throws IOException {
+        if (snapshotEveryRecords <= 0) {
+            throw new IllegalArgumentException("snapshotEveryRecords must be positive");
+        }
+        Files.createDirectories(dir);
+        long started = System.nanoTime();
+
+        Path snapshot = dir.resolve(SNAPSHOT_FILE);
+        boolean hasSnapshot = Files.exists(snapshot);
+        ConcurrentLedger ledger = new ConcurrentLedger(hasSnapshot ? LedgerSnapshot.readCount(snapshot) : 1024);
+        long firstGeneration = hasSnapshot ? LedgerSnapshot.loadInto(snapshot, ledger) : 0;
+
+        long nextGeneration = firstGeneration;
+        long replayed = 0;
+        Map<Integer, Long> orphans = new HashMap<>();
+        for (long g : journalGenerations(dir)) {
+            if (g >= firstGeneration) {
+                replayed += TransactionJournal.replay(journalFile(dir, g),
+                        (kind, customer, account, other, cents) -> apply(ledger, orphans, kind, customer, account, other, cents));
+                nextGeneration = g + 1;
+            }
+        }
+        if (!orphans.isEmpty()) {
+            throw new IllegalStateException("Journal in " + dir + " changes accounts that were never created: "
+                    + orphans.keySet());
+        }
+
+        logger.info(String.format("Recovered %d accounts (%d journal records) from %s in %d ms",
+                ledger.size(), replayed, dir, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)));
+
+        JournaledAccountRepository repo =
+                new JournaledAccountRepository(dir, ledger, nextGeneration, snapshotEveryRecords, syncIntervalMillis);
+        if (replayed >= snapshotEveryRecords) {
+            repo.requestSnapshot();
+        }
+        return repo;
+    }
+
+    /** @return null when ATM_JOURNAL_DIR is not set */
+    static JournaledAccountRepository fromEnv() throws IOException {
+        var dir = EnvConfig.lookup(ENV_DIR);
+        return dir.isPresent() ? open(Path.of(dir.get())) : null;
+    }
+
+    /** Number of accounts stored. */
+    public int size() {
+        return ledger.size();
+    }
+
+    // ---- reads ---------------------------------------------------------------------
+
+    @Override
+    public List<Account> findAllByCustomer(int customerNumber) {
+        return ledger.findAllByCustomer(customerNumber);
+    }
+
+    @Override
+    public Account findOneForCustomer(int customerNumber, int accountNumber) {
+        return ledger.findOneForCustomer(customerNumber, accountNumber);
+    }
+
+    @Override
+    public Account findByAccountNumber(int accountNumber) {
+        return ledger.findByAccountNumber(accountNumber);
+    }
+
+    /** Served from the ledger's in-memory rings, so it starts empty again after a restart. */
+    @Override
+    public List<AccountTransaction> history(int customerNumber, int accountNumber, long beforeId, int limit) {
+        return ledger.history(customerNumber, accountNumber, beforeId, limit);
+    }
+
+    // ---- writes: apply to the ledger, then journal ---------------------------------
+
+    @Override
+    public void save(Account account) {
+        Objects.requireNonNull(account, "account is required");
+        long cents = account.getBalanceCents();
+        Lock lock = cut.writeLock();
+        lock.lock();
+        try {
+            ensureOpen();
+            ledger.save(account);
+            log(TransactionJournal.SET, account.getCustomerNumber(), account.getAccountNumber(),
+                    account.getAccountType().ordinal(), cents);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int create(int customerNumber, AccountType type, long initialCents) {
+        Lock lock = cut.readLock();
+        lock.lock();
+        try {
+            ensureOpen();
+            int accountNumber = ledger.create(customerNumber, type, initialCents);
+            log(TransactionJournal.CREATE, customerNumber, accountNumber, type.ordinal(), initialCents);
+            return accountNumber;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long deposit(int customerNumber, int accountNumber, long cents) {
+        Lock lock = cut.readLock();
+        lock.lock();
+        try {
+            ensureOpen();
+            long balance = ledger.deposit(customerNumber, accountNumber, cents);
+            log(TransactionJournal.DELTA, customerNumber, accountNumber, 0, cents);
+            return balance;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long withdraw(int customerNumber, int accountNumber, long cents) {
+        Lock lock = cut.readLock();
+        lock.lock();
+        try {
+            ensureOpen();
+            long balance = ledger.withdraw(customerNumber, accountNumber, cents);
+            log(TransactionJournal.DELTA, customerNumber, accountNumber, 0, -cents);
+            return balance;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public AccountService.TransferResult transfer(int customerNumber, int fromAccount, int toAccount, long cents) {
+        Lock lock = cut.readLock();
+        lock.lock();
+        try {
+            ensureOpen();
+            AccountService.TransferResult result = ledger.transfer(customerNumber, fromAccount, toAccount, cents);
+            log(TransactionJournal.TRANSFER, customerNumber, fromAccount, toAccount, cents);
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Journaled as an ordinary TRANSFER; replay never checks who owns either account. */
+    @Override
+    public AccountService.TransferResult transferToAccount(int customerNumber, int fromAccount, int toAccount, long cents) {
+        Lock lock = cut.readLock();
+        lock.lock();
+        try {
+            ensureOpen();
+            AccountService.TransferResult result = ledger.transferToAccount(customerNumber, fromAccount, toAccount, cents);
+            log(TransactionJournal.TRANSFER, customerNumber, fromAccount, toAccount, cents);
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---- interest (InterestAccrualJob) ---------------------------------------------
+
+    /** Runs alone, so every account below the run's high slot has its create journaled. */
+    @Override
+    public int[] startInterestRun(int epochDay, int annualBasisPoints) {
+        Lock lock = cut.writeLock();
+        lock.lock();
+        try {
+            ensureOpen();
+            int[] run = ledger.startInterestRun(epochDay, annualBasisPoints);
+            if (run[3] == 0) {
+                log(TransactionJournal.INTEREST_RUN, annualBasisPoints, run[1], epochDay, 0);
+            }
+            return run;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long accrueInterest(int slot, int annualBasisPoints, int epochDay) {
+        Lock lock = cut.readLock();
+        lock.lock();
+        try {
+            ensureOpen();
+            long interest = ledger.accrueInterest(slot, annualBasisPoints, epochDay);
+            if (interest > 0) {
+                log(TransactionJournal.INTEREST, 0, ledger.accountNumberAt(slot), epochDay, interest);
+            }
+            return interest;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void finishInterestRun(int epochDay) {
+        Lock lock = cut.readLock();
+        lock.lock();
+        try {
+            ensureOpen();
+            ledger.finishInterestRun(epochDay);
+            log(TransactionJournal.INTEREST_DONE, 0, 0, epochDay, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---- snapshots -----------------------------------------------------------------
+
+    /**
+     * Write a snapshot now and delete the journal segments it covers. Writers are paused
+     * only for the in-memory copy.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            LedgerSnapshot copy;
+            TransactionJournal finished;
+            Lock lock = cut.writeLock();
+            lock.lock();
+            try {
+                ensureOpen();
+                finished = journal;
+                copy = LedgerSnapshot.copyOf(ledger, generation + 1);
+                journal = TransactionJournal.create(journalFile(dir, generation + 1), REGION_BYTES);
+                generation++;
+            } finally {
+                lock.unlock();
+            }
+            finished.close();
+
+            copy.writeTo(dir.resolve(SNAPSHOT_FILE));
+            for (long g : journalGenerations(dir)) {
+                if (g < copy.generation) {
+                    Files.deleteIfExists(journalFile(dir, g));
+                }
+            }
+            logger.fine(() -> "Snapshot of " + copy.count + " accounts at generation " + copy.generation);
+        }
+    }
+
+    private void requestSnapshot() {
+        background.execute(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException ex) {
+                if (!closed) {
+                    logger.log(Level.WARNING, "Ledger snapshot failed; the journal keeps growing", ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Wait for a running snapshot, force the journal to disk and stop the background sync;
+     * the repository is unusable after this.
+     */
+    @Override
+    public void close() {
+        background.shutdown();
+        // a snapshot still deleting old segments would race the next open()
+        synchronized (snapshotLock) {
+            Lock lock = cut.writeLock();
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                journal.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Could not close the transaction journal", ex);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // ---- internals -----------------------------------------------------------------
+
+    private void log(int kind, int customer, int account, int other, long cents) {
+        if (journal.append(kind, customer, account, other, cents) == snapshotEveryRecords) {
+            requestSnapshot();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Account journal is closed");
+        }
+    }
+
+    /**
+     * Replay one record. A delta can reach the journal just before the create of its
+     * account (both run under the read lock), so it is held back until the create shows up.
+     */
+    private static void apply(ConcurrentLedger ledger, Map<Integer, Long> orphans,
+                              int kind, int customer, int account, int other, long cents) {
+        switch (kind) {
+            case TransactionJournal.CREATE:
+            case TransactionJournal.SET: {
+                ledger.restore(customer, account, TYPES[other], cents);
+                Long early = orphans.remove(account);
+                if (early != null) {
+                    ledger.adjust(account, early);
+                }
+                break;
+            }
+            case TransactionJournal.DELTA:
+                adjust(ledger, orphans, account, cents);
+                break;
+            case TransactionJournal.TRANSFER:
+                adjust(ledger, orphans, account, -cents);
+                adjust(ledger, orphans, other, cents);
+                break;
+            case TransactionJournal.INTEREST:
+                // only accounts created before the run started are credited, so never early
+                ledger.restoreInterest(account, cents, other);
+                break;
+            case TransactionJournal.INTEREST_RUN:
+                ledger.restoreInterestRun(other, customer, account, false);
+                break;
+            case TransactionJournal.INTEREST_DONE:
+                ledger.finishInterestRun(other);
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record kind " + kind);
+        }
+    }
+
+    private static void adjust(ConcurrentLedger ledger, Map<Integer, Long> orphans, int account, long cents) {
+        // deltas are replayed in journal order, not commit order, so a balance may dip
+        // below zero part way through; only the final sum has to be right
+        if (ledger.contains(account)) {
+            ledger.adjust(account, cents);
+        } else {
+            orphans.merge(account, cents, Long::sum);
+        }
+    }
+
+    private static Path journalFile(Path dir, long generation) {
+        return dir.resolve(String.format("%s%016d%s", JOURNAL_PREFIX, generation, JOURNAL_SUFFIX));
+    }
+
+    /** Generations of the journal segments in {@code dir}, oldest first. */
+    private static List<Long> journalGenerations(Path dir) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, JOURNAL_PREFIX + "*" + JOURNAL_SUFFIX)) {
+            for (Path f : files) {
+                String name = f.getFileName().toString();
+                generations.add(Long.parseLong(name.substring(JOURNAL_PREFIX.length(),
+                        name.length() - JOURNAL_SUFFIX.length())));
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+}
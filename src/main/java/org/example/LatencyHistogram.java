@@ -0,0 +1,160 @@
+package org.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram for one operation: log-linear buckets (16 per power of two, so any
+ * reported percentile is within ~6% of the true value) over the full range of
+ * {@code long} nanoseconds.
+ * <p>
+ * {@link #record} is a handful of atomic increments into preallocated counters: no locks,
+ * no allocation. Percentiles are computed when read (JMX, text dump), not when recorded.
+ */
+public final class LatencyHistogram implements OperationStatsMXBean {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    // updated by tick(); guarded by this
+    private long lastCount;
+    private long lastTickNanos;
+    private volatile double opsPerSecond;
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /** Record one completed operation (successful or not). */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.getAndIncrement(bucket(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+        if (nanos > maxNanos.get()) {
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /** Count a failed operation; its latency is recorded separately via {@link #record}. */
+    public void error() {
+        errors.increment();
+    }
+
+    /** Value at quantile {@code q} (0..1) in nanoseconds: the upper edge of its bucket. */
+    public long percentileNanos(double q) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            counts[b] = buckets.get(b);
+            total += counts[b];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts[b];
+            if (seen >= rank) {
+                return Math.min(upperEdge(b), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /** Refresh {@link #getOpsPerSecond()}; called about once a second by {@link Metrics}. */
+    synchronized void tick(long nowNanos) {
+        long c = count.sum();
+        if (lastTickNanos != 0 && nowNanos > lastTickNanos) {
+            opsPerSecond = (c - lastCount) * 1e9 / (nowNanos - lastTickNanos);
+        }
+        lastCount = c;
+        lastTickNanos = nowNanos;
+    }
+
+    // ---- OperationStatsMXBean --------------------------------------------------------
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getOpsPerSecond() {
+        return opsPerSecond;
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long c = count.sum();
+        return c == 0 ? 0.0 : totalNanos.sum() / 1_000.0 / c;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return percentileNanos(0.50) / 1_000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return percentileNanos(0.99) / 1_000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return percentileNanos(0.999) / 1_000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return maxNanos.get() / 1_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-28s count=%d errors=%d ops/s=%.1f mean=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus",
+                name, getCount(), getErrors(), getOpsPerSecond(), getMeanMicros(),
+                getP50Micros(), getP99Micros(), getP999Micros(), getMaxMicros());
+    }
+
+    // ---- bucket math -----------------------------------------------------------------
+
+    // values below 16 get one bucket each; above that, 16 equal-width buckets per power of two
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long upperEdge(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,232 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Point-in-time copy of every account in a {@link ConcurrentLedger}, written as one file
+ * of primitive columns so it can be streamed to and from disk in large bulk copies, plus
+ * the ledger's interest runs.
+ * <p>
+ * {@code generation} is the first journal segment <em>not</em> reflected in the snapshot;
+ * recovery loads the snapshot and then replays segments from that generation on.
+ * <pre>
+ * header: int magic, int version, long generation, int count, int runs
+ * body:   int[count] customers, int[count] accounts, byte[count] types, long[count] cents,
+ *         int[count] interest days, int[runs * 4] {epoch day, annual bp, high slot, done}
+ * </pre>
+ * Version 1 files (no runs field, interest days or runs) are still read.
+ */
+final class LedgerSnapshot {
+    private static final int MAGIC = 0x41544D53; // "ATMS"
+    private static final int VERSION = 2;
+    private static final int V1_HEADER_BYTES = 20;
+    private static final int HEADER_BYTES = 24;
+    private static final int V1_BYTES_PER_ACCOUNT = 4 + 4 + 1 + 8;
+    private static final int BYTES_PER_ACCOUNT = V1_BYTES_PER_ACCOUNT + 4;
+    private static final int BYTES_PER_RUN = 16;
+    private static final int IO_BUFFER_BYTES = 1 << 20;
+    private static final AccountType[] TYPES = AccountType.values();
+
+    final long generation;
+    final int count;
+    private final int[] customers;
+    private final int[] accounts;
+    private final byte[] types;
+    private final long[] cents;
+    private final int[] interestDays;
+    private final int[] runs;
+
+    private LedgerSnapshot(long generation, int count, int runCount) {
+        this.generation = generation;
+        this.count = count;
+        this.customers = new int[count];
+        this.accounts = new int[count];
+        this.types = new byte[count];
+        this.cents = new long[count];
+        this.interestDays = new int[count];
+        this.runs = new int[runCount * 4];
+    }
+
+    /** Copy the ledger; writers must be paused so the copy is a consistent cut. */
+    static LedgerSnapshot copyOf(ConcurrentLedger ledger, long generation) {
+        List<int[]> interestRuns = ledger.interestRuns();
+        LedgerSnapshot s = new LedgerSnapshot(generation, ledger.size(), interestRuns.size());
+        int[] i = {0};
+        ledger.forEach((customer, account, type, balance) -> {
+            int n = i[0]++;
+            s.customers[n] = customer;
+            s.accounts[n] = account;
+            s.types[n] = (byte) type.ordinal();
+            s.cents[n] = balance;
+        });
+        for (int slot = 0; slot < s.count; slot++) {
+            s.interestDays[slot] = ledger.interestDayAt(slot);
+        }
+        for (int r = 0; r < interestRuns.size(); r++) {
+            System.arraycopy(interestRuns.get(r), 0, s.runs, r * 4, 4);
+        }
+        return s;
+    }
+
+    /** Write to {@code target} via a temporary file, so a crash never leaves half a snapshot. */
+    void writeTo(Path target) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(IO_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(MAGIC).putInt(VERSION).putLong(generation).putInt(count).putInt(runs.length / 4).flip();
+            drain(ch, buf);
+            for (int off = 0; off < count; ) {
+                int n = Math.min(count - off, IO_BUFFER_BYTES / 4);
+                buf.clear().asIntBuffer().put(customers, off, n);
+                drain(ch, buf.limit(n * 4));
+                off += n;
+            }
+            for (int off = 0; off < count; ) {
+                int n = Math.min(count - off, IO_BUFFER_BYTES / 4);
+                buf.clear().asIntBuffer().put(accounts, off, n);
+                drain(ch, buf.limit(n * 4));
+                off += n;
+            }
+            for (int off = 0; off < count; ) {
+                int n = Math.min(count - off, IO_BUFFER_BYTES);
+                buf.clear().put(types, off, n).flip();
+                drain(ch, buf);
+                off += n;
+            }
+            for (int off = 0; off < count; ) {
+                int n = Math.min(count - off, IO_BUFFER_BYTES / 8);
+                buf.clear().asLongBuffer().put(cents, off, n);
+                drain(ch, buf.limit(n * 8));
+                off += n;
+            }
+            for (int off = 0; off < count; ) {
+                int n = Math.min(count - off, IO_BUFFER_BYTES / 4);
+                buf.clear().asIntBuffer().put(interestDays, off, n);
+                drain(ch, buf.limit(n * 4));
+                off += n;
+            }
+            buf.clear().asIntBuffer().put(runs);
+            drain(ch, buf.limit(runs.length * 4));
+            ch.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void drain(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+    }
+
+    /** Number of accounts in the snapshot at {@code file}, from its header. */
+    static int readCount(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readHeader(ch, file).getInt(16);
+        }
+    }
+
+    /**
+     * Load every account from {@code file} into {@code ledger}.
+     * @return the snapshot's generation
+     */
+    static long loadInto(Path file, ConcurrentLedger ledger) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(ch, file);
+            long generation = header.getLong(8);
+            int count = header.getInt(16);
+            int runCount = header.getInt(20);
+            boolean v1 = header.getInt(4) == 1;
+            long expected = v1 ? V1_HEADER_BYTES + (long) count * V1_BYTES_PER_ACCOUNT
+                    : HEADER_BYTES + (long) count * BYTES_PER_ACCOUNT + (long) runCount * BYTES_PER_RUN;
+            if (ch.size() != expected) {
+                throw new IllegalStateException("Snapshot " + file + " is truncated");
+            }
+            int[] customers = new int[count];
+            int[] accounts = new int[count];
+            byte[] types = new byte[count];
+            long[] cents = new long[count];
+            int[] interestDays = new int[count];
+            int[] runs = new int[runCount * 4];
+
+            ByteBuffer buf = ByteBuffer.allocateDirect(IO_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int off = 0; off < count; ) {
+                int n = fill(ch, buf, Math.min(count - off, IO_BUFFER_BYTES / 4) * 4) / 4;
+                buf.asIntBuffer().get(customers, off, n);
+                off += n;
+            }
+            for (int off = 0; off < count; ) {
+                int n = fill(ch, buf, Math.min(count - off, IO_BUFFER_BYTES / 4) * 4) / 4;
+                buf.asIntBuffer().get(accounts, off, n);
+                off += n;
+            }
+            for (int off = 0; off < count; ) {
+                int n = fill(ch, buf, Math.min(count - off, IO_BUFFER_BYTES));
+                buf.get(types, off, n);
+                off += n;
+            }
+            for (int off = 0; off < count; ) {
+                int n = fill(ch, buf, Math.min(count - off, IO_BUFFER_BYTES / 8) * 8) / 8;
+                buf.asLongBuffer().get(cents, off, n);
+                off += n;
+            }
+            if (!v1) {
+                for (int off = 0; off < count; ) {
+                    int n = fill(ch, buf, Math.min(count - off, IO_BUFFER_BYTES / 4) * 4) / 4;
+                    buf.asIntBuffer().get(interestDays, off, n);
+                    off += n;
+                }
+                fill(ch, buf, runs.length * 4);
+                buf.asIntBuffer().get(runs);
+            }
+
+            for (int i = 0; i < count; i++) {
+                ledger.restore(customers[i], accounts[i], TYPES[types[i]], cents[i]);
+                if (interestDays[i] != 0) {
+                    ledger.restoreInterest(accounts[i], 0, interestDays[i]);
+                }
+            }
+            for (int r = 0; r < runs.length; r += 4) {
+                ledger.restoreInterestRun(runs[r], runs[r + 1], runs[r + 2], runs[r + 3] == 1);
+            }
+            return generation;
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel ch, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        fill(ch, header, V1_HEADER_BYTES);
+        int version = header.getInt(4);
+        if (header.getInt(0) != MAGIC || (version != 1 && version != VERSION)) {
+            throw new IllegalStateException(file + " is not a ledger snapshot");
+        }
+        header.limit(HEADER_BYTES);
+        if (version != 1) {
+            // runs field; reads as 0 for version 1
+            ByteBuffer runs = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            fill(ch, runs, 4);
+            header.putInt(20, runs.getInt(0));
+        }
+        return header;
+    }
+
+    /** Read exactly {@code bytes} bytes into {@code buf}, leaving them between 0 and limit. */
+    private static int fill(FileChannel ch, ByteBuffer buf, int bytes) throws IOException {
+        buf.clear().limit(bytes);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf) < 0) {
+                throw new IllegalStateException("Snapshot ended early");
+            }
+        }
+        buf.flip();
+        return bytes;
+    }
+}
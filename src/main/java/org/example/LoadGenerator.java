@@ -0,0 +1,372 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Synthetic load: replays scripted ATM sessions (login, a random mix of balance checks,
+ * deposits, withdrawals and transfers, exit) for many customers concurrently, through the
+ * same {@link AppConfig.Wiring} that terminals use.
+ * <p>
+ * Every AccountService call is timed and its effect tallied per account. At the end each
+ * account's balance must equal its starting balance plus its tally, and every session must
+ * have finished cleanly; otherwise the run fails (exit code 1).
+ * <p>
+ * Usage: {@code LoadGenerator [--customers-file customers.csv] [--customers N] [--sessions N]
+ * [--ops N] [--concurrency N] [--seed N]}. Without a customers file, N synthetic customers
+ * with a checking and a savings account each are created in memory. With one, the JDBC
+ * wiring is used and each {@code customer,pin} line must be a real customer with at least
+ * one account; run it against a test schema, since it moves real balances.
+ */
+public final class LoadGenerator {
+    private static final Logger logger = Logger.getLogger(LoadGenerator.class.getName());
+
+    static final int FIRST_SYNTHETIC_CUSTOMER = 500_000;
+
+    // operation mix, in percent
+    private static final int VIEW_PERCENT = 40;
+    private static final int DEPOSIT_PERCENT = 25;
+    private static final int WITHDRAW_PERCENT = 20;
+
+    private static final class Customer {
+        final int number;
+        final int pin;
+        final int accounts;
+
+        Customer(int number, int pin, int accounts) {
+            this.number = number;
+            this.pin = pin;
+            this.accounts = accounts;
+        }
+    }
+
+    /** Outcome of one run. */
+    public static final class Result {
+        public final int sessions;
+        public final int failedSessions;
+        public final long serviceCalls;
+        public final long elapsedNanos;
+        public final int accountsChecked;
+        public final int mismatches;
+        private final String report;
+
+        Result(int sessions, int failedSessions, long serviceCalls, long elapsedNanos,
+               int accountsChecked, int mismatches, String report) {
+            this.sessions = sessions;
+            this.failedSessions = failedSessions;
+            this.serviceCalls = serviceCalls;
+            this.elapsedNanos = elapsedNanos;
+            this.accountsChecked = accountsChecked;
+            this.mismatches = mismatches;
+            this.report = report;
+        }
+
+        public boolean passed() {
+            return failedSessions == 0 && mismatches == 0;
+        }
+
+        @Override
+        public String toString() {
+            return report;
+        }
+    }
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException, SQLException {
+        Path customersFile = null;
+        int customers = 1_000;
+        int sessions = 10_000;
+        int ops = 5;
+        int concurrency = 200;
+        long seed = 42;
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--customers-file": customersFile = Path.of(value); i++; break;
+                case "--customers": customers = Integer.parseInt(value); i++; break;
+                case "--sessions": sessions = Integer.parseInt(value); i++; break;
+                case "--ops": ops = Integer.parseInt(value); i++; break;
+                case "--concurrency": concurrency = Integer.parseInt(value); i++; break;
+                case "--seed": seed = Long.parseLong(value); i++; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        Result result;
+        if (customersFile == null) {
+            result = runInMemory(customers, sessions, ops, concurrency, seed);
+        } else {
+            AppConfig.Wiring wiring = AppConfig.prodWiring();
+            result = run(wiring, readCustomers(customersFile, wiring.accounts), sessions, ops, concurrency, seed);
+        }
+        System.out.println(result);
+        System.exit(result.passed() ? 0 : 1);
+    }
+
+    /** Run against a fresh in-memory wiring with {@code customers} synthetic customers. */
+    public static Result runInMemory(int customers, int sessions, int opsPerSession, int concurrency, long seed) {
+        var auth = new AppConfig.InMemoryAuthRepo();
+        var ledger = new ConcurrentLedger();
+        List<Customer> list = new ArrayList<>(customers);
+        for (int i = 0; i < customers; i++) {
+            int number = FIRST_SYNTHETIC_CUSTOMER + i;
+            int pin = 1_000 + (int) ((i * 7_919L) % 9_000);
+            auth.seed(number, pin);
+            ledger.create(number, AccountType.CHECKING, 100_000);
+            ledger.create(number, AccountType.SAVINGS, 500_000);
+            list.add(new Customer(number, pin, 2));
+        }
+        return run(AppConfig.inMemoryWiring(auth, ledger), list, sessions, opsPerSession, concurrency, seed);
+    }
+
+    private static Result run(AppConfig.Wiring wiring, List<Customer> customers,
+                              int sessions, int opsPerSession, int concurrency, long seed) {
+        if (customers.isEmpty() || sessions <= 0 || opsPerSession < 0 || concurrency <= 0) {
+            throw new IllegalArgumentException("need customers, sessions > 0, ops >= 0 and concurrency > 0");
+        }
+        Map<Integer, Long> before = balances(wiring.accounts, customers);
+        Tally tally = new Tally(wiring.service);
+        AppConfig.SessionFactory factory = new AppConfig.Wiring(wiring.auth, wiring.accounts, tally).sessions();
+
+        LatencyHistogram sessionLatency = new LatencyHistogram("session");
+        List<LatencyHistogram> histograms = List.of(sessionLatency, tally.deposit, tally.withdraw, tally.transfer);
+        AtomicInteger failed = new AtomicInteger();
+        Semaphore slots = new Semaphore(concurrency);
+        Random random = new Random(seed);
+
+        long start = System.nanoTime();
+        histograms.forEach(h -> h.tick(start));
+        try (ExecutorService terminals = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int s = 0; s < sessions; s++) {
+                Customer c = customers.get(random.nextInt(customers.size()));
+                byte[] script = script(c, opsPerSession, random);
+                slots.acquireUninterruptibly();
+                terminals.execute(() -> {
+                    long t0 = System.nanoTime();
+                    try {
+                        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+                        factory.open(new ByteArrayInputStream(script), discard).getLogin();
+                    } catch (RuntimeException ex) {
+                        // includes running out of script, e.g. after a rejected login
+                        failed.incrementAndGet();
+                    } finally {
+                        sessionLatency.record(System.nanoTime() - t0);
+                        slots.release();
+                    }
+                });
+            }
+        } // close() waits for every session
+        long end = System.nanoTime();
+        histograms.forEach(h -> h.tick(end));
+
+        int checked = 0;
+        List<String> mismatches = new ArrayList<>();
+        for (Customer c : customers) {
+            for (Account a : wiring.accounts.findAllByCustomer(c.number)) {
+                Long initial = before.get(a.getAccountNumber());
+                if (initial == null) {
+                    continue; // opened during the run by someone else
+                }
+                checked++;
+                long expected = initial + tally.net(a.getAccountNumber());
+                long actual = a.getBalanceCents();
+                if (actual != expected) {
+                    mismatches.add("#" + a.getAccountNumber() + " expected " + expected + " cents, found " + actual);
+                }
+            }
+        }
+        mismatches.stream().limit(10).forEach(m -> logger.warning("Balance mismatch: " + m));
+
+        long calls = tally.deposit.getCount() + tally.withdraw.getCount() + tally.transfer.getCount();
+        double seconds = (end - start) / 1e9;
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("sessions: %d (%d failed) in %.3f s = %.1f sessions/s%n",
+                sessions, failed.get(), seconds, sessions / seconds));
+        report.append(String.format("service calls: %d = %.1f ops/s (balance checks not counted)%n",
+                calls, calls / seconds));
+        for (LatencyHistogram h : histograms) {
+            report.append("  ").append(h).append('\n');
+        }
+        report.append(String.format("consistency: %d accounts checked, %d mismatches%n",
+                checked, mismatches.size()));
+        return new Result(sessions, failed.get(), calls, end - start, checked, mismatches.size(), report.toString());
+    }
+
+    /** Menu input for one session; account choices are positions in the customer's list. */
+    private static byte[] script(Customer c, int ops, Random random) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(c.number).append('\n').append(c.pin).append('\n');
+        for (int i = 0; i < ops; i++) {
+            int roll = random.nextInt(100);
+            int from = 1 + random.nextInt(c.accounts);
+            int dollars = 1 + random.nextInt(200);
+            if (roll < VIEW_PERCENT || (c.accounts < 2 && roll >= VIEW_PERCENT + DEPOSIT_PERCENT + WITHDRAW_PERCENT)) {
+                sb.append("1\n").append(from).append('\n');
+            } else if (roll < VIEW_PERCENT + DEPOSIT_PERCENT) {
+                sb.append("2\n").append(from).append('\n').append(dollars).append('\n');
+            } else if (roll < VIEW_PERCENT + DEPOSIT_PERCENT + WITHDRAW_PERCENT) {
+                sb.append("3\n").append(from).append('\n').append(dollars).append('\n');
+            } else {
+                int to = 1 + random.nextInt(c.accounts - 1);
+                if (to >= from) {
+                    to++;
+                }
+                sb.append("4\n").append(from).append('\n').append(to).append('\n').append(dollars).append('\n');
+            }
+        }
+        sb.append("5\n");
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static Map<Integer, Long> balances(AccountRepository accounts, List<Customer> customers) {
+        Map<Integer, Long> cents = new HashMap<>();
+        for (Customer c : customers) {
+            for (Account a : accounts.findAllByCustomer(c.number)) {
+                cents.put(a.getAccountNumber(), a.getBalanceCents());
+            }
+        }
+        return cents;
+    }
+
+    /** {@code customer,pin} per line; blank lines and lines starting with # are skipped. */
+    private static List<Customer> readCustomers(Path file, AccountRepository accounts) throws IOException {
+        List<Customer> list = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(",");
+                int number = Integer.parseInt(parts[0].trim());
+                int owned = accounts.findAllByCustomer(number).size();
+                if (owned == 0) {
+                    logger.warning("Skipping customer " + number + ": no accounts");
+                    continue;
+                }
+                list.add(new Customer(number, Integer.parseInt(parts[1].trim()), owned));
+            }
+        }
+        return list;
+    }
+
+    /** Times each service call and sums the cents it moved per account (successful calls only). */
+    private static final class Tally implements AccountService {
+        final AccountService delegate;
+        final LatencyHistogram deposit = new LatencyHistogram("deposit");
+        final LatencyHistogram withdraw = new LatencyHistogram("withdraw");
+        final LatencyHistogram transfer = new LatencyHistogram("transfer");
+        private final Map<Integer, LongAdder> netCents = new ConcurrentHashMap<>();
+
+        Tally(AccountService delegate) {
+            this.delegate = delegate;
+        }
+
+        long net(int accountNumber) {
+            LongAdder sum = netCents.get(accountNumber);
+            return sum == null ? 0 : sum.sum();
+        }
+
+        private void add(int accountNumber, long cents) {
+            netCents.computeIfAbsent(accountNumber, k -> new LongAdder()).add(cents);
+        }
+
+        @Override
+        public double deposit(int customerNumber, int accountNumber, double amount) {
+            long start = System.nanoTime();
+            try {
+                double balance = delegate.deposit(customerNumber, accountNumber, amount);
+                add(accountNumber, Math.round(amount * 100.0));
+                return balance;
+            } catch (RuntimeException ex) {
+                deposit.error();
+                throw ex;
+            } finally {
+                deposit.record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public double withdraw(int customerNumber, int accountNumber, double amount) {
+            long start = System.nanoTime();
+            try {
+                double balance = delegate.withdraw(customerNumber, accountNumber, amount);
+                add(accountNumber, -Math.round(amount * 100.0));
+                return balance;
+            } catch (RuntimeException ex) {
+                withdraw.error(); // mostly insufficient funds, which the mix produces on purpose
+                throw ex;
+            } finally {
+                withdraw.record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public TransferResult transfer(int customerNumber, int fromAccount, int toAccount, double amount) {
+            long start = System.nanoTime();
+            try {
+                TransferResult result = delegate.transfer(customerNumber, fromAccount, toAccount, amount);
+                long cents = Math.round(amount * 100.0);
+                add(fromAccount, -cents);
+                add(toAccount, cents);
+                return result;
+            } catch (RuntimeException ex) {
+                transfer.error();
+                throw ex;
+            } finally {
+                transfer.record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public TransferResult transferToAccount(int customerNumber, int fromAccount, int toAccount, double amount) {
+            long start = System.nanoTime();
+            try {
+                TransferResult result = delegate.transferToAccount(customerNumber, fromAccount, toAccount, amount);
+                long cents = Math.round(amount * 100.0);
+                add(fromAccount, -cents);
+                add(toAccount, cents);
+                return result;
+            } catch (RuntimeException ex) {
+                transfer.error();
+                throw ex;
+            } finally {
+                transfer.record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public CompletableFuture<Void> depositDeferred(int customerNumber, int accountNumber, double amount) {
+            return delegate.depositDeferred(customerNumber, accountNumber, amount)
+                    .whenComplete((ignored, ex) -> {
+                        if (ex == null) {
+                            add(accountNumber, Math.round(amount * 100.0));
+                        }
+                    });
+        }
+    }
+}
@@ -1,13 +1,50 @@
 package org.example;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
-import java.util.Arrays;
+import java.util.logging.Logger;
 
 public class Main {
+    private static final Logger logger = Logger.getLogger(Main.class.getName());
+
+    /** Argument for the AppCDS training run (see the cdsArchive task in build.gradle). */
+    static final String CDS_TRAINING = "--cds-training";
+
     public static void main(String[] args) throws SQLException {
+        if (args.length > 0 && CDS_TRAINING.equals(args[0])) {
+            cdsTraining();
+            return;
+        }
         boolean useProd = true;
 
+        long mainStart = System.nanoTime();
         ATM atm = useProd ? AppConfig.prodATM() : AppConfig.devATM();
+        long wiringMillis = (System.nanoTime() - mainStart) / 1_000_000;
+        // the pool is still being built on db-pool-init, which logs its own timings
+        logger.info(String.format("Startup: JVM boot to main %s, wiring %d ms, login prompt %s after launch",
+                millisSinceLaunch(mainStart), wiringMillis, millisSinceLaunch(System.nanoTime())));
         atm.getLogin();
     }
+
+    /** Time from process launch to the {@code System.nanoTime()} value given, e.g. "212 ms". */
+    private static String millisSinceLaunch(long nanoTime) {
+        return ProcessHandle.current().info().startInstant()
+                .map(launch -> (System.currentTimeMillis() - (System.nanoTime() - nanoTime) / 1_000_000
+                        - launch.toEpochMilli()) + " ms")
+                .orElse("n/a");
+    }
+
+    /**
+     * Loads what a terminal start loads, without a database: the driver and pool classes,
+     * and one scripted in-memory session (login, view balance, exit).
+     */
+    private static void cdsTraining() throws SQLException {
+        new OracleDBUtil();
+        byte[] script = "952141\n191904\n1\n1\n5\n".getBytes(StandardCharsets.US_ASCII);
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        AppConfig.devSessions().open(new ByteArrayInputStream(script), discard).getLogin();
+    }
 }
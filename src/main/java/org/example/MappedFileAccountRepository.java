@@ -0,0 +1,407 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AccountRepository kept in a memory-mapped file of fixed-width records, so balances live
+ * off the heap, survive restarts and are updated in place.
+ * <pre>
+ * header (64 bytes): int magic, int version, int record count
+ * record (32 bytes): int account, int customer, int type ordinal,
+ *                    int previous record of the same customer (-1 = none), long cents,
+ *                    long account version (bumped by every balance change)
+ * </pre>
+ * Files written by the 24-byte layout (file version 1, no account versions) are
+ * rewritten in the current layout the first time they are opened.
+ * An {@link IntIntMap} from account number to record, and one from customer to that
+ * customer's newest record, are rebuilt by scanning the file on {@link #open}; the
+ * "previous record" links chain a customer's accounts together inside the file, so the
+ * secondary index costs one int per customer on the heap. Balance updates use the same
+ * striped locks and volatile reads as {@link ConcurrentLedger}, and {@link #save} compares
+ * the account version the same way.
+ * <p>
+ * Writes reach the OS page cache immediately and survive a process crash; call
+ * {@link #force()} to push them to the device. A transfer updates two records, and a
+ * machine crash between those two stores is not rolled back; put a
+ * {@link JournaledAccountRepository} in front if that matters.
+ */
+public final class MappedFileAccountRepository implements AccountRepository, AutoCloseable {
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INTS =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final AccountType[] TYPES = AccountType.values();
+
+    private static final int MAGIC = 0x41544D41; // "ATMA"
+    private static final int VERSION = 2;
+    private static final int V1_RECORD_BYTES = 24;
+    private static final int HEADER_BYTES = 64;
+    private static final int COUNT_OFFSET = 8;
+
+    private static final int RECORD_BYTES = 32;
+    private static final int ACCOUNT = 0;
+    private static final int CUSTOMER = 4;
+    private static final int TYPE = 8;
+    private static final int PREVIOUS = 12;
+    private static final int CENTS = 16;
+    private static final int ACCOUNT_VERSION = 24;
+
+    private static final int REGION_BITS = 20; // records per mapped region
+    private static final int REGION_MASK = (1 << REGION_BITS) - 1;
+    private static final long REGION_BYTES = (long) RECORD_BYTES << REGION_BITS;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private volatile MappedByteBuffer[] regions = new MappedByteBuffer[0];
+
+    private final IntIntMap recordByAccount;
+    private final IntIntMap newestByCustomer;
+    private final StripedLocks locks = StripedLocks.forAvailableProcessors();
+    private final AtomicInteger nextAccountNumber = new AtomicInteger(1000);
+    private final AccountNumberAllocator accountNumbers =
+            new AccountNumberAllocator(AccountNumberAllocator.consecutive(nextAccountNumber), 64);
+    private int recordCount; // guarded by this
+
+    private MappedFileAccountRepository(FileChannel channel, MappedByteBuffer header, int recordCount) {
+        this.channel = channel;
+        this.header = header;
+        this.recordCount = recordCount;
+        this.recordByAccount = new IntIntMap(Math.max(1024, recordCount), -1);
+        this.newestByCustomer = new IntIntMap(Math.max(1024, recordCount / 2), -1);
+    }
+
+    /** Open {@code file}, creating an empty store if it does not exist yet. */
+    public static MappedFileAccountRepository open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean fresh = channel.size() == 0;
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (fresh) {
+                header.putInt(0, MAGIC).putInt(4, VERSION).putInt(COUNT_OFFSET, 0);
+            } else if (header.getInt(0) == MAGIC && header.getInt(4) == 1) {
+                channel.close();
+                upgradeFromV1(file);
+                return open(file);
+            } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IllegalStateException(file + " is not an account file");
+            }
+            MappedFileAccountRepository repo =
+                    new MappedFileAccountRepository(channel, header, header.getInt(COUNT_OFFSET));
+            repo.rebuildIndexes();
+            return repo;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Rewrites a version 1 file with room for an account version in every record, next to
+     * it, then moves it into place; a crash part way leaves the original untouched.
+     */
+    private static void upgradeFromV1(Path file) throws IOException {
+        Path upgraded = file.resolveSibling(file.getFileName() + ".upgrade");
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(upgraded, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(in, header, 0);
+            int count = header.getInt(COUNT_OFFSET);
+            header.putInt(4, VERSION).clear();
+            out.write(header, 0);
+
+            int perChunk = 4096;
+            ByteBuffer narrow = ByteBuffer.allocate(perChunk * V1_RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer wide = ByteBuffer.allocate(perChunk * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int first = 0; first < count; first += perChunk) {
+                int n = Math.min(perChunk, count - first);
+                narrow.clear().limit(n * V1_RECORD_BYTES);
+                readFully(in, narrow, HEADER_BYTES + (long) first * V1_RECORD_BYTES);
+                wide.clear();
+                for (int i = 0; i < n; i++) {
+                    // the version 1 fields are the first 24 bytes of the new record; version 0
+                    wide.put(narrow.array(), i * V1_RECORD_BYTES, V1_RECORD_BYTES).putLong(0);
+                }
+                wide.flip();
+                while (wide.hasRemaining()) {
+                    out.write(wide, HEADER_BYTES + (long) first * RECORD_BYTES + wide.position());
+                }
+            }
+            out.force(true);
+        }
+        Files.move(upgraded, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer into, long position) throws IOException {
+        while (into.hasRemaining()) {
+            if (in.read(into, position + into.position()) < 0) {
+                throw new IllegalStateException("Account file is shorter than its record count");
+            }
+        }
+    }
+
+    private synchronized void rebuildIndexes() {
+        for (int r = 0; r < recordCount; r++) {
+            MappedByteBuffer region = region(r);
+            int off = offset(r);
+            int account = region.getInt(off + ACCOUNT);
+            recordByAccount.put(account, r);
+            newestByCustomer.put(region.getInt(off + CUSTOMER), r);
+            nextAccountNumber.accumulateAndGet(account + 1, Math::max);
+        }
+    }
+
+    /** Number of accounts stored. */
+    public synchronized int size() {
+        return recordCount;
+    }
+
+    // ---- reads ---------------------------------------------------------------------
+
+    @Override
+    public List<Account> findAllByCustomer(int customerNumber) {
+        List<Account> list = new ArrayList<>();
+        for (int r = newestByCustomer.get(customerNumber); r >= 0; ) {
+            list.add(read(r));
+            r = region(r).getInt(offset(r) + PREVIOUS);
+        }
+        Collections.reverse(list); // oldest first, like the other repositories
+        return list;
+    }
+
+    @Override
+    public Account findOneForCustomer(int customerNumber, int accountNumber) {
+        int r = recordFor(customerNumber, accountNumber);
+        return r < 0 ? null : read(r);
+    }
+
+    @Override
+    public Account findByAccountNumber(int accountNumber) {
+        int r = recordByAccount.get(accountNumber);
+        return r < 0 ? null : read(r);
+    }
+
+    // ---- writes --------------------------------------------------------------------
+
+    @Override
+    public void save(Account account) {
+        Objects.requireNonNull(account, "account is required");
+        long cents = account.getBalanceCents();
+        int accountNumber = account.getAccountNumber();
+        if (appendIfAbsent(account.getCustomerNumber(), accountNumber, account.getAccountType(), cents)) {
+            account.setVersion(0);
+            return;
+        }
+        int r = requireRecord(account.getCustomerNumber(), accountNumber, "Account not found for this customer");
+        MappedByteBuffer region = region(r);
+        int off = offset(r);
+        synchronized (locks.lock(accountNumber)) {
+            if ((long) LONGS.getVolatile(region, off + ACCOUNT_VERSION) != account.getVersion()) {
+                throw new AccountConflictException("Account " + accountNumber
+                        + " changed since it was read (version " + account.getVersion() + ")");
+            }
+            account.setVersion(setCents(region, off, cents));
+        }
+    }
+
+    @Override
+    public int create(int customerNumber, AccountType type, long initialCents) {
+        Objects.requireNonNull(type, "type is required");
+        while (true) {
+            int accountNumber = accountNumbers.next();
+            // numbers saved explicitly may collide with the allocator's range; skip those
+            if (appendIfAbsent(customerNumber, accountNumber, type, initialCents)) {
+                return accountNumber;
+            }
+        }
+    }
+
+    @Override
+    public long deposit(int customerNumber, int accountNumber, long cents) {
+        int r = requireRecord(customerNumber, accountNumber, "Account not found for this customer");
+        MappedByteBuffer region = region(r);
+        int off = offset(r);
+        synchronized (locks.lock(accountNumber)) {
+            long balance = Math.addExact((long) LONGS.getVolatile(region, off + CENTS), cents);
+            setCents(region, off, balance);
+            return balance;
+        }
+    }
+
+    @Override
+    public long withdraw(int customerNumber, int accountNumber, long cents) {
+        int r = requireRecord(customerNumber, accountNumber, "Account not found for this customer");
+        MappedByteBuffer region = region(r);
+        int off = offset(r);
+        synchronized (locks.lock(accountNumber)) {
+            long balance = (long) LONGS.getVolatile(region, off + CENTS);
+            if (balance < cents) {
+                throw new IllegalStateException("Insufficient funds or invalid amount");
+            }
+            balance -= cents;
+            setCents(region, off, balance);
+            return balance;
+        }
+    }
+
+    @Override
+    public AccountService.TransferResult transfer(int customerNumber, int fromAccount, int toAccount, long cents) {
+        int fromRecord = requireRecord(customerNumber, fromAccount, "Source account not found for this customer");
+        int toRecord = requireRecord(customerNumber, toAccount, "Destination account not found for this customer");
+        return move(fromRecord, fromAccount, toRecord, toAccount, cents);
+    }
+
+    @Override
+    public AccountService.TransferResult transferToAccount(int customerNumber, int fromAccount, int toAccount, long cents) {
+        int fromRecord = requireRecord(customerNumber, fromAccount, "Source account not found for this customer");
+        int toRecord = recordByAccount.get(toAccount);
+        if (toRecord < 0) {
+            throw new IllegalArgumentException("Destination account not found");
+        }
+        return move(fromRecord, fromAccount, toRecord, toAccount, cents);
+    }
+
+    private AccountService.TransferResult move(int fromRecord, int fromAccount, int toRecord, int toAccount, long cents) {
+        MappedByteBuffer fromRegion = region(fromRecord);
+        MappedByteBuffer toRegion = region(toRecord);
+        int fromOff = offset(fromRecord);
+        int toOff = offset(toRecord);
+
+        synchronized (locks.first(fromAccount, toAccount)) {
+            synchronized (locks.second(fromAccount, toAccount)) {
+                long fromBalance = (long) LONGS.getVolatile(fromRegion, fromOff + CENTS);
+                if (fromBalance < cents) {
+                    throw new IllegalStateException("Insufficient funds");
+                }
+                long toBalance = Math.addExact((long) LONGS.getVolatile(toRegion, toOff + CENTS), cents);
+                fromBalance -= cents;
+                setCents(fromRegion, fromOff, fromBalance);
+                setCents(toRegion, toOff, toBalance);
+                return AccountService.TransferResult.ofCents(fromBalance, toBalance,
+                        toRegion.getInt(toOff + CUSTOMER));
+            }
+        }
+    }
+
+    /** Flush every change so far to the storage device. */
+    public void force() {
+        header.force();
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    // ---- internals -----------------------------------------------------------------
+
+    private synchronized boolean appendIfAbsent(int customerNumber, int accountNumber, AccountType type, long cents) {
+        if (recordByAccount.containsKey(accountNumber)) {
+            return false;
+        }
+        int r = recordCount;
+        MappedByteBuffer region = region(r);
+        int off = offset(r);
+        region.putInt(off + ACCOUNT, accountNumber);
+        region.putInt(off + CUSTOMER, customerNumber);
+        region.putInt(off + TYPE, type.ordinal());
+        region.putInt(off + PREVIOUS, newestByCustomer.get(customerNumber));
+        LONGS.setVolatile(region, off + CENTS, cents);
+        LONGS.setVolatile(region, off + ACCOUNT_VERSION, 0L);
+        recordCount = r + 1;
+        INTS.setRelease(header, COUNT_OFFSET, recordCount);
+
+        // publishing the index entries makes the record visible to readers
+        recordByAccount.put(accountNumber, r);
+        newestByCustomer.put(customerNumber, r);
+        return true;
+    }
+
+    /**
+     * Caller holds the account's lock. The version is published after the balance, so a
+     * reader that sees the new version also sees the new balance.
+     * @return the new version
+     */
+    private static long setCents(MappedByteBuffer region, int off, long cents) {
+        LONGS.setVolatile(region, off + CENTS, cents);
+        long version = (long) LONGS.getVolatile(region, off + ACCOUNT_VERSION) + 1;
+        LONGS.setVolatile(region, off + ACCOUNT_VERSION, version);
+        return version;
+    }
+
+    private int recordFor(int customerNumber, int accountNumber) {
+        int r = recordByAccount.get(accountNumber);
+        if (r < 0 || region(r).getInt(offset(r) + CUSTOMER) != customerNumber) {
+            return -1;
+        }
+        return r;
+    }
+
+    private int requireRecord(int customerNumber, int accountNumber, String notFoundMessage) {
+        int r = recordFor(customerNumber, accountNumber);
+        if (r < 0) {
+            throw new IllegalArgumentException(notFoundMessage);
+        }
+        return r;
+    }
+
+    private Account read(int r) {
+        MappedByteBuffer region = region(r);
+        int off = offset(r);
+        // version first: a balance newer than its version only makes save() conflict
+        long version = (long) LONGS.getVolatile(region, off + ACCOUNT_VERSION);
+        long cents = (long) LONGS.getVolatile(region, off + CENTS);
+        return Account.ofCents(region.getInt(off + CUSTOMER), region.getInt(off + ACCOUNT),
+                TYPES[region.getInt(off + TYPE)], cents, version);
+    }
+
+    private static int offset(int record) {
+        return (record & REGION_MASK) * RECORD_BYTES;
+    }
+
+    private MappedByteBuffer region(int record) {
+        int index = record >>> REGION_BITS;
+        MappedByteBuffer[] current = regions;
+        return index < current.length ? current[index] : mapRegion(index);
+    }
+
+    private synchronized MappedByteBuffer mapRegion(int index) {
+        MappedByteBuffer[] current = regions;
+        try {
+            while (current.length <= index) {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER_BYTES + current.length * REGION_BYTES, REGION_BYTES);
+                region.order(ByteOrder.LITTLE_ENDIAN);
+                current = Arrays.copyOf(current, current.length + 1);
+                current[current.length - 1] = region;
+                regions = current;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not grow the account file", ex);
+        }
+        return current[index];
+    }
+}
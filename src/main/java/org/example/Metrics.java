@@ -0,0 +1,109 @@
+package org.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide set of named {@link LatencyHistogram}s. Each histogram is registered as the
+ * MBean {@code org.example:type=Latency,name=<name>} when first requested; a background
+ * ticker keeps ops/s current and, if configured, logs every histogram as a text table.
+ * <p>
+ * Names used by the wiring in {@link AppConfig}: {@code service.*} (end to end through
+ * AccountService), {@code jdbc.*} / {@code ledger.*} (repository calls, one SQL statement
+ * each for JDBC), {@code auth.verify}, and {@code db.pool.wait} (time to borrow a pooled
+ * connection), so SQL time is roughly {@code jdbc.*} minus {@code db.pool.wait}.
+ */
+public final class Metrics {
+    private static final Logger logger = Logger.getLogger(Metrics.class.getName());
+
+    static final String ENV_ENABLED = "ATM_METRICS_ENABLED";
+    static final String ENV_DUMP_SECONDS = "ATM_METRICS_DUMP_SECONDS";
+
+    private static final Metrics SHARED = new Metrics("org.example");
+
+    private final String jmxDomain;
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private ScheduledExecutorService ticker; // guarded by this
+
+    Metrics(String jmxDomain) {
+        this.jmxDomain = jmxDomain;
+    }
+
+    public static Metrics shared() {
+        return SHARED;
+    }
+
+    /**
+     * The shared registry with its ticker running, or null when ATM_METRICS_ENABLED=false.
+     * ATM_METRICS_DUMP_SECONDS > 0 also logs all histograms at that interval.
+     */
+    static Metrics fromEnv() {
+        if (!EnvConfig.flag(ENV_ENABLED, true)) {
+            return null;
+        }
+        SHARED.start(EnvConfig.integer(ENV_DUMP_SECONDS, 0));
+        return SHARED;
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, this::register);
+    }
+
+    private LatencyHistogram register(String name) {
+        LatencyHistogram h = new LatencyHistogram(name);
+        if (jmxDomain != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                        .registerMBean(h, new ObjectName(jmxDomain + ":type=Latency,name=" + name));
+            } catch (JMException ex) {
+                logger.log(Level.WARNING, "Could not register latency MBean " + name, ex);
+            }
+        }
+        return h;
+    }
+
+    /** One line per histogram, sorted by name. */
+    public String report() {
+        List<String> names = new ArrayList<>(histograms.keySet());
+        names.sort(null);
+        StringBuilder sb = new StringBuilder();
+        for (String name : names) {
+            sb.append(histograms.get(name)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** Start the ticker (once per registry). */
+    synchronized void start(int dumpSeconds) {
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-ticker");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::tick, 1, 1, TimeUnit.SECONDS);
+        if (dumpSeconds > 0) {
+            ticker.scheduleAtFixedRate(() -> logger.info("Latency\n" + report()),
+                    dumpSeconds, dumpSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        for (LatencyHistogram h : histograms.values()) {
+            h.tick(now);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.example;
+
+/** JMX view of one {@link LatencyHistogram}; latencies since start-up, in microseconds. */
+public interface OperationStatsMXBean {
+    String getName();
+
+    long getCount();
+
+    long getErrors();
+
+    /** Rate over the last second the metrics ticker measured. */
+    double getOpsPerSecond();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
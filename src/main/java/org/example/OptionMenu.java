@@ -1,6 +1,11 @@
 package org.example;
 
+import java.io.InputStream;
+import java.io.PrintStream;
 import java.text.DecimalFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Scanner;
 
@@ -12,29 +17,46 @@ public class OptionMenu {
     private final AccountService accountService;
 
     // ---- UI helpers -----------------------------------------------------------------
-    private final Scanner in = new Scanner(System.in);
+    private final Scanner in;
+    private final PrintStream out;
     private final DecimalFormat money = new DecimalFormat("'$'###,##0.00");
+    private final DateTimeFormatter statementTime =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
 
     // ---- Session state --------------------------------------------------------------
     private Integer currentCustomerNumber = null;
 
-    public enum Operation { VIEW_BALANCE, DEPOSIT, WITHDRAW, TRANSFER, EXIT }
+    public enum Operation { VIEW_BALANCE, DEPOSIT, WITHDRAW, TRANSFER, RECENT_TRANSACTIONS, TRANSFER_TO_CUSTOMER, EXIT }
+
+    // entries per screen of "Recent transactions"
+    private static final int STATEMENT_PAGE = 10;
 
     public OptionMenu(AuthenticationRepository auth,
                       AccountRepository accounts,
                       AccountService accountService) {
+        this(auth, accounts, accountService, System.in, System.out);
+    }
+
+    /** A session on its own terminal streams (e.g. a network connection). */
+    public OptionMenu(AuthenticationRepository auth,
+                      AccountRepository accounts,
+                      AccountService accountService,
+                      InputStream in,
+                      PrintStream out) {
         this.auth = auth;
         this.accounts = accounts;
         this.accountService = accountService;
+        this.in = new Scanner(in);
+        this.out = out;
     }
 
     // ---- Login ----------------------------------------------------------------------
     public void getLogin() {
-        System.out.println("Welcome to ATM");
+        out.println("Welcome to ATM");
         while (true) {
-            System.out.print("Enter your Customer Number: ");
+            out.print("Enter your Customer Number: ");
             int cn = safeIntInput();
-            System.out.print("Enter your PIN Number: ");
+            out.print("Enter your PIN Number: ");
             int pn = safeIntInput();
 
             if (auth.verify(cn, pn)) {
@@ -42,7 +64,7 @@ public class OptionMenu {
                 mainMenuLoop();
                 return;
             } else {
-                System.out.println("\nWrong Customer Number or PIN\n");
+                out.println("\nWrong Customer Number or PIN\n");
             }
         }
     }
@@ -52,27 +74,34 @@ public class OptionMenu {
         while (true) {
             Operation op = selectOperation();
             if (op == Operation.EXIT) {
-                System.out.println("Thank you for using ATM. Bye!");
+                out.println("Thank you for using ATM. Bye!");
                 return;
             }
 
-            // For these operations the user must pick an existing account
-            Account selected = chooseAccountFor(op);
-            if (selected == null) continue; // cancelled or none available
+            try {
+                // For these operations the user must pick an existing account
+                Account selected = chooseAccountFor(op);
+                if (selected == null) continue; // cancelled or none available
 
-            perform(op, selected);
+                perform(op, selected);
+            } catch (DatabaseUnavailableException ex) {
+                // reads with nothing last-known to fall back on
+                out.println(ex.getMessage());
+            }
         }
     }
 
     // ---- Menus & actions ------------------------------------------------------------
     private Operation selectOperation() {
-        System.out.println("\nWhat would you like to do?");
-        System.out.println("1) View Balance");
-        System.out.println("2) Deposit");
-        System.out.println("3) Withdraw");
-        System.out.println("4) Transfer");
-        System.out.println("5) Exit");
-        System.out.print("Choice: ");
+        out.println("\nWhat would you like to do?");
+        out.println("1) View Balance");
+        out.println("2) Deposit");
+        out.println("3) Withdraw");
+        out.println("4) Transfer");
+        out.println("5) Exit");
+        out.println("6) Recent transactions");
+        out.println("7) Transfer to another customer");
+        out.print("Choice: ");
 
         int pick = safeIntInput();
         switch (pick) {
@@ -81,8 +110,10 @@ public class OptionMenu {
             case 3: return Operation.WITHDRAW;
             case 4: return Operation.TRANSFER;
             case 5: return Operation.EXIT;
+            case 6: return Operation.RECENT_TRANSACTIONS;
+            case 7: return Operation.TRANSFER_TO_CUSTOMER;
             default:
-                System.out.println("Invalid choice.");
+                out.println("Invalid choice.");
                 return selectOperation(); // re-prompt
         }
     }
@@ -91,76 +122,108 @@ public class OptionMenu {
     private Account chooseAccountFor(Operation op) {
         List<Account> list = accounts.findAllByCustomer(currentCustomerNumber);
         if (list == null || list.isEmpty()) {
-            System.out.println("No accounts found for your profile.");
+            out.println("No accounts found for your profile.");
             return null;
         }
 
+        if (accounts.isDegraded()) {
+            out.println("\nThe bank system is not responding: balances may be out of date"
+                    + " and changes can't be made right now.");
+        }
         while (true) {
-            System.out.println("\nChoose an account (0 = cancel):");
+            out.println("\nChoose an account (0 = cancel):");
             for (int i = 0; i < list.size(); i++) {
                 Account a = list.get(i);
-                System.out.printf("%d) %s #%d — %s%n",
-                        i + 1, a.getAccountType(), a.getAccountNumber(), money.format(a.getAccountBalance()));
+                out.printf("%d) %s #%d — %s%n",
+                        i + 1, a.getAccountType(), a.getAccountNumber(), formatMoney(a.getAccountBalance()));
             }
-            System.out.print("Choice: ");
+            out.print("Choice: ");
             int pick = safeIntInput();
 
             if (pick == 0) return null;
             if (pick >= 1 && pick <= list.size()) return list.get(pick - 1);
 
-            System.out.println("Invalid choice. Try again.");
+            out.println("Invalid choice. Try again.");
         }
     }
 
     private void perform(Operation op, Account acct) {
         switch (op) {
             case VIEW_BALANCE: {
-                // Optional: re-fetch to display freshest balance
+                // re-fetch (past the account cache) to display the freshest balance
                 Account fresh = accounts.findOneForCustomer(currentCustomerNumber, acct.getAccountNumber());
                 double bal = (fresh != null ? fresh.getAccountBalance() : acct.getAccountBalance());
-                System.out.println("Balance: " + money.format(bal));
+                out.println("Balance: " + formatMoney(bal));
                 return;
             }
             case DEPOSIT: {
                 double amt = askAmount("Deposit amount (0 = cancel)");
-                if (amt == 0.0) { System.out.println("Cancelled."); return; }
+                if (amt == 0.0) { out.println("Cancelled."); return; }
                 try {
                     double newBal = accountService.deposit(currentCustomerNumber, acct.getAccountNumber(), amt);
-                    System.out.println("New balance: " + money.format(newBal));
+                    out.println("New balance: " + formatMoney(newBal));
                 } catch (IllegalArgumentException | IllegalStateException ex) {
-                    System.out.println("Deposit failed: " + ex.getMessage());
+                    out.println("Deposit failed: " + ex.getMessage());
                 }
                 return;
             }
             case WITHDRAW: {
                 double amt = askAmount("Withdraw amount (0 = cancel)");
-                if (amt == 0.0) { System.out.println("Cancelled."); return; }
+                if (amt == 0.0) { out.println("Cancelled."); return; }
                 try {
                     double newBal = accountService.withdraw(currentCustomerNumber, acct.getAccountNumber(), amt);
-                    System.out.println("New balance: " + money.format(newBal));
+                    out.println("New balance: " + formatMoney(newBal));
                 } catch (IllegalArgumentException | IllegalStateException ex) {
-                    System.out.println("Withdrawal failed: " + ex.getMessage());
+                    out.println("Withdrawal failed: " + ex.getMessage());
                 }
                 return;
             }
             case TRANSFER: {
-                System.out.println("Select destination account:");
+                out.println("Select destination account:");
                 Account to = chooseAccountFor(op);
-                if (to == null) { System.out.println("Cancelled."); return; }
+                if (to == null) { out.println("Cancelled."); return; }
                 if (to.getAccountNumber() == acct.getAccountNumber()) {
-                    System.out.println("Cannot transfer to the same account.");
+                    out.println("Cannot transfer to the same account.");
                     return;
                 }
                 double amt = askAmount("Transfer amount (0 = cancel)");
-                if (amt == 0.0) { System.out.println("Cancelled."); return; }
+                if (amt == 0.0) { out.println("Cancelled."); return; }
                 try {
                     AccountService.TransferResult res = accountService.transfer(
                             currentCustomerNumber, acct.getAccountNumber(), to.getAccountNumber(), amt);
-                    System.out.println("Transfer complete.");
-                    System.out.println("Source new balance: " + money.format(res.fromNewBalance));
-                    System.out.println("Dest   new balance: " + money.format(res.toNewBalance));
+                    out.println("Transfer complete.");
+                    out.println("Source new balance: " + formatMoney(res.fromNewBalance));
+                    out.println("Dest   new balance: " + formatMoney(res.toNewBalance));
+                } catch (IllegalArgumentException | IllegalStateException ex) {
+                    out.println("Transfer failed: " + ex.getMessage());
+                }
+                return;
+            }
+            case RECENT_TRANSACTIONS:
+                showHistory(acct);
+                return;
+            case TRANSFER_TO_CUSTOMER: {
+                out.print("Destination account number (0 = cancel): ");
+                int toNumber = safeIntInput();
+                if (toNumber == 0) { out.println("Cancelled."); return; }
+                if (toNumber == acct.getAccountNumber()) {
+                    out.println("Cannot transfer to the same account.");
+                    return;
+                }
+                if (accounts.findByAccountNumber(toNumber) == null) {
+                    out.println("No account #" + toNumber + ".");
+                    return;
+                }
+                double amt = askAmount("Transfer amount (0 = cancel)");
+                if (amt == 0.0) { out.println("Cancelled."); return; }
+                try {
+                    AccountService.TransferResult res = accountService.transferToAccount(
+                            currentCustomerNumber, acct.getAccountNumber(), toNumber, amt);
+                    out.println("Transfer to #" + toNumber + " complete.");
+                    // the other customer's balance is theirs alone
+                    out.println("Source new balance: " + formatMoney(res.fromNewBalance));
                 } catch (IllegalArgumentException | IllegalStateException ex) {
-                    System.out.println("Transfer failed: " + ex.getMessage());
+                    out.println("Transfer failed: " + ex.getMessage());
                 }
                 return;
             }
@@ -169,12 +232,64 @@ public class OptionMenu {
         }
     }
 
+    /** Newest first, one page at a time; each page continues from the last id shown. */
+    private void showHistory(Account acct) {
+        long before = Long.MAX_VALUE;
+        while (true) {
+            List<AccountTransaction> page =
+                    accounts.history(currentCustomerNumber, acct.getAccountNumber(), before, STATEMENT_PAGE);
+            if (page.isEmpty()) {
+                out.println(before == Long.MAX_VALUE ? "No transactions yet." : "No older transactions.");
+                return;
+            }
+            for (AccountTransaction t : page) {
+                out.println(formatTransaction(t));
+            }
+            if (page.size() < STATEMENT_PAGE) {
+                return;
+            }
+            out.print("1) Older  0) Back: ");
+            if (safeIntInput() != 1) {
+                return;
+            }
+            before = page.get(page.size() - 1).id;
+        }
+    }
+
+    String formatTransaction(AccountTransaction t) {
+        String when = statementTime.format(Instant.ofEpochMilli(t.timestampMillis));
+        String amount;
+        switch (t.kind) {
+            case DEPOSIT:
+                amount = "+" + formatMoney(t.amountCents / 100.0) + " deposit";
+                break;
+            case WITHDRAWAL:
+                amount = "-" + formatMoney(t.amountCents / 100.0) + " withdrawal";
+                break;
+            case TRANSFER_IN:
+                amount = "+" + formatMoney(t.amountCents / 100.0) + " from #" + t.counterpartyAccount;
+                break;
+            case INTEREST:
+                amount = "+" + formatMoney(t.amountCents / 100.0) + " interest";
+                break;
+            default:
+                amount = "-" + formatMoney(t.amountCents / 100.0) + " to #" + t.counterpartyAccount;
+                break;
+        }
+        return when + "  " + amount + "  (balance " + formatMoney(t.balanceAfterCents / 100.0) + ")";
+    }
+
+    /** Dollar amount as shown to the customer, e.g. $1,234.50 */
+    String formatMoney(double amount) {
+        return money.format(amount);
+    }
+
     // ---- Input helpers --------------------------------------------------------------
     private int safeIntInput() {
         while (!in.hasNextInt()) {
-            System.out.println("Numbers only. Try again.");
+            out.println("Numbers only. Try again.");
             in.next(); // consume bad token
-            System.out.print("Choice: ");
+            out.print("Choice: ");
         }
         int v = in.nextInt();
         in.nextLine(); // consume trailing newline
@@ -182,16 +297,16 @@ public class OptionMenu {
     }
 
     private double askAmount(String prompt) {
-        System.out.print(prompt + ": ");
+        out.print(prompt + ": ");
         while (!in.hasNextDouble()) {
-            System.out.println("Numbers only. Try again.");
+            out.println("Numbers only. Try again.");
             in.next(); // consume bad token
-            System.out.print(prompt + ": ");
+            out.print(prompt + ": ");
         }
         double v = in.nextDouble();
         in.nextLine(); // consume trailing newline
         if (v < 0.0) {
-            System.out.println("Amount cannot be negative.");
+            out.println("Amount cannot be negative.");
             return 0.0;
         }
         return v;
@@ -13,10 +13,17 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import oracle.ucp.jdbc.PoolDataSourceFactory;
 import oracle.ucp.jdbc.PoolDataSource;
 import java.util.logging.Logger;
+import javax.sql.DataSource;
 /**
  * Utility class that bootstraps a UCP pool for the Oracle Autonomous Database.
  * <p>
@@ -25,6 +32,17 @@ import java.util.logging.Logger;
  * that directory. In wallet mode the JDBC URL follows the
  * {@code jdbc:oracle:thin:@alias?TNS_ADMIN=/path/to/wallet} format so both the
  * wallet and password-based authentication are used.
+ * <p>
+ * Pool sizing, statement caching and timeouts are read from the {@code DB_POOL_*}
+ * settings (environment variable or system property, see {@link EnvConfig}).
+ * Call {@link #warmUp} at startup so the first logins don't pay for TLS setup, or use
+ * {@link #startInBackground} to do both off the caller's thread.
+ * <p>
+ * Setting {@code DB_READ_CONNECT_DESCRIPTOR} or (wallet mode) {@code DB_READ_TNS_ALIAS}
+ * adds a second pool, {@code JDBC_UCP_READ_POOL}, for {@link #getReadConnection}: point it
+ * at a replica or at a lower-priority service (e.g. {@code _low}) so balance queries stop
+ * competing with writes. It is sized by {@code DB_READ_POOL_MIN_SIZE}/{@code _MAX_SIZE};
+ * without it, reads use the primary pool.
  */
 public class OracleDBUtil {
     // Replace USER_NAME, PASSWORD with your username and password
@@ -37,39 +55,234 @@ public class OracleDBUtil {
     private static final String ENV_DB_CONNECT_DESCRIPTOR = "DB_CONNECT_DESCRIPTOR";
     private static final String ENV_DB_TNS_ALIAS = "DB_TNS_ALIAS";
     private static final String ENV_TNS_ADMIN = "src/main/Wallet_A92L3F0AB96RM7KR";
+    private static final String ENV_POOL_INITIAL_SIZE = "DB_POOL_INITIAL_SIZE";
+    private static final String ENV_POOL_MIN_SIZE = "DB_POOL_MIN_SIZE";
+    private static final String ENV_POOL_MAX_SIZE = "DB_POOL_MAX_SIZE";
+    private static final String ENV_POOL_MAX_STATEMENTS = "DB_POOL_MAX_STATEMENTS";
+    private static final String ENV_POOL_WAIT_SECONDS = "DB_POOL_CONNECTION_WAIT_SECONDS";
+    private static final String ENV_POOL_INACTIVE_SECONDS = "DB_POOL_INACTIVE_TIMEOUT_SECONDS";
+    private static final String ENV_POOL_ABANDONED_SECONDS = "DB_POOL_ABANDONED_TIMEOUT_SECONDS";
+    private static final String ENV_POOL_TRUST_IDLE_SECONDS = "DB_POOL_TRUST_IDLE_SECONDS";
+    private static final String ENV_DB_READ_CONNECT_DESCRIPTOR = "DB_READ_CONNECT_DESCRIPTOR";
+    private static final String ENV_DB_READ_TNS_ALIAS = "DB_READ_TNS_ALIAS";
+    private static final String ENV_READ_POOL_MIN_SIZE = "DB_READ_POOL_MIN_SIZE";
+    private static final String ENV_READ_POOL_MAX_SIZE = "DB_READ_POOL_MAX_SIZE";
     private final static String CONN_FACTORY_CLASS_NAME = "oracle.jdbc.replay.OracleConnectionPoolDataSourceImpl";
-    private PoolDataSource poolDataSource;
+    // completed by the constructor, or later by the startInBackground thread
+    private final CompletableFuture<Pools> pools;
+    private volatile LatencyHistogram poolWait;
     private static final Logger logger = Logger.getLogger(OracleDBUtil.class.getName());
+
+    /** Primary pool and read pool; the same object when there is no separate read pool. */
+    private static final class Pools {
+        final DataSource writes;
+        final DataSource reads;
+
+        Pools(DataSource writes, DataSource reads) {
+            this.writes = writes;
+            this.reads = reads;
+        }
+    }
+
     public OracleDBUtil() throws SQLException {
-        this.poolDataSource = PoolDataSourceFactory.getPoolDataSource();
+        this.pools = CompletableFuture.completedFuture(createPools());
+    }
+
+    private OracleDBUtil(CompletableFuture<Pools> pools) {
+        this.pools = pools;
+    }
+
+    /**
+     * Any pair of data sources in place of the UCP pools, e.g. a local or embedded database
+     * standing in for Oracle in tests. {@code reads} may be null to share {@code writes}.
+     */
+    public static OracleDBUtil of(DataSource writes, DataSource reads) {
+        Objects.requireNonNull(writes, "writes data source is required");
+        return new OracleDBUtil(CompletableFuture.completedFuture(new Pools(writes, reads != null ? reads : writes)));
+    }
+
+    /**
+     * Returns at once and builds the pool on a background thread, so driver class loading
+     * and pool setup overlap with whatever the caller does next (e.g. showing the login
+     * prompt). Then warms it up with {@code hotSql}, unless that is empty. Connections
+     * asked for before the pool exists wait for it; if it cannot be built, they fail with
+     * the original error.
+     */
+    public static OracleDBUtil startInBackground(Collection<String> hotSql) {
+        CompletableFuture<Pools> pools = new CompletableFuture<>();
+        OracleDBUtil db = new OracleDBUtil(pools);
+        Thread init = new Thread(() -> {
+            long start = System.nanoTime();
+            try {
+                pools.complete(createPools());
+            } catch (SQLException | RuntimeException ex) {
+                logger.severe("Could not create the connection pool: " + ex);
+                pools.completeExceptionally(ex);
+                return;
+            }
+            logger.info(String.format("Connection pool created in the background in %d ms",
+                    (System.nanoTime() - start) / 1_000_000));
+            if (!hotSql.isEmpty()) {
+                db.warmUp(hotSql);
+            }
+        }, "db-pool-init");
+        init.setDaemon(true);
+        init.start();
+        return db;
+    }
+
+    private static Pools createPools() throws SQLException {
+        int min = EnvConfig.integer(ENV_POOL_MIN_SIZE, 2);
+        PoolDataSource writes = createPool("JDBC_UCP_POOL", buildJdbcUrl(),
+                EnvConfig.integer(ENV_POOL_INITIAL_SIZE, min), min, EnvConfig.integer(ENV_POOL_MAX_SIZE, 20));
+        String readUrl = buildReadJdbcUrl();
+        if (readUrl == null) {
+            return new Pools(writes, writes);
+        }
+        int readMin = EnvConfig.integer(ENV_READ_POOL_MIN_SIZE, 2);
+        PoolDataSource reads = createPool("JDBC_UCP_READ_POOL", readUrl,
+                readMin, readMin, EnvConfig.integer(ENV_READ_POOL_MAX_SIZE, 20));
+        return new Pools(writes, reads);
+    }
+
+    private static PoolDataSource createPool(String name, String url, int initial, int min, int max)
+            throws SQLException {
+        PoolDataSource poolDataSource = PoolDataSourceFactory.getPoolDataSource();
         poolDataSource.setConnectionFactoryClassName(CONN_FACTORY_CLASS_NAME);
-        poolDataSource.setURL(buildJdbcUrl());
+        poolDataSource.setURL(url);
         poolDataSource.setUser(resolveEnvOrDefault(ENV_DB_USER, DEFAULT_DB_USER));
         poolDataSource.setPassword(resolveEnvOrDefault(ENV_DB_PASSWORD, DEFAULT_DB_PASSWORD));
-        poolDataSource.setConnectionPoolName("JDBC_UCP_POOL");
-        logger.info("Database connection initialized with URL: " + poolDataSource.getURL());
+        poolDataSource.setConnectionPoolName(name);
+        configurePool(poolDataSource, initial, min, max);
+        logger.info(name + " initialized with URL: " + poolDataSource.getURL());
         logger.info("Database user: " + poolDataSource.getUser());
+        return poolDataSource;
+    }
+
+    /** The pools, waiting for a background start to finish if needed. */
+    private Pools pools() throws SQLException {
+        try {
+            return pools.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the connection pool", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof SQLException) {
+                throw (SQLException) ex.getCause();
+            }
+            throw new SQLException("Connection pool could not be created", ex.getCause());
+        }
+    }
+
+    private static void configurePool(PoolDataSource pool, int initial, int min, int max) throws SQLException {
+        pool.setInitialPoolSize(initial);
+        pool.setMinPoolSize(min);
+        pool.setMaxPoolSize(Math.max(min, max));
+        // fail a borrow after this long instead of queueing forever when the pool is exhausted
+        pool.setConnectionWaitTimeout(EnvConfig.integer(ENV_POOL_WAIT_SECONDS, 5));
+        // per-connection implicit statement cache; the repositories' SQL is all constant strings
+        pool.setMaxStatements(EnvConfig.integer(ENV_POOL_MAX_STATEMENTS, 32));
+        pool.setInactiveConnectionTimeout(EnvConfig.integer(ENV_POOL_INACTIVE_SECONDS, 300));
+        pool.setAbandonedConnectionTimeout(EnvConfig.integer(ENV_POOL_ABANDONED_SECONDS, 120));
+        // validate on borrow, but skip the check for connections that were used very recently
+        pool.setValidateConnectionOnBorrow(true);
+        pool.setSecondsToTrustIdleConnection(EnvConfig.integer(ENV_POOL_TRUST_IDLE_SECONDS, 30));
+    }
+
+    /**
+     * Opens the minimum number of pooled connections and creates the given statements on
+     * each of them, so the first requests find an open connection and a client-side
+     * statement cache entry. Nothing is executed, so the server parses each statement on
+     * its first real use. A separate read pool is warmed with the queries among them.
+     * Failures are logged, not thrown: a cold pool is slower, not broken.
+     */
+    public void warmUp(Collection<String> hotSql) {
+        Pools p;
+        try {
+            p = pools();
+        } catch (SQLException ex) {
+            logger.warning("Connection pool warm-up skipped: " + ex.getMessage());
+            return;
+        }
+        warmUp("pooled", p.writes, hotSql);
+        if (p.reads != p.writes) {
+            List<String> queries = new ArrayList<>();
+            for (String sql : hotSql) {
+                if (sql.stripLeading().startsWith("SELECT")) {
+                    queries.add(sql);
+                }
+            }
+            warmUp("read pool", p.reads, queries);
+        }
+    }
+
+    private void warmUp(String what, DataSource pool, Collection<String> hotSql) {
+        long start = System.nanoTime();
+        List<Connection> held = new ArrayList<>();
+        try {
+            int target = pool instanceof PoolDataSource ? Math.max(1, ((PoolDataSource) pool).getMinPoolSize()) : 1;
+            // hold them all at once, otherwise the pool just hands back the same connection
+            for (int i = 0; i < target; i++) {
+                Connection conn = borrow(pool);
+                held.add(conn);
+                for (String sql : hotSql) {
+                    if (isPlsqlBlock(sql)) {
+                        conn.prepareCall(sql).close();
+                    } else {
+                        conn.prepareStatement(sql).close();
+                    }
+                }
+            }
+        } catch (SQLException ex) {
+            logger.warning("Connection pool warm-up stopped early: " + ex.getMessage());
+        } finally {
+            for (Connection conn : held) {
+                try {
+                    conn.close();
+                } catch (SQLException ignored) {
+                    // returning to the pool; nothing useful to do
+                }
+            }
+        }
+        logger.info(String.format("Warmed %d %s connection(s) with %d statement(s) in %d ms",
+                held.size(), what, hotSql.size(), (System.nanoTime() - start) / 1_000_000));
+    }
+
+    private static boolean isPlsqlBlock(String sql) {
+        String head = sql.stripLeading();
+        return head.startsWith("BEGIN") || head.startsWith("DECLARE");
     }
 
     private static String buildJdbcUrl() {
+        return buildJdbcUrl(resolveEnvOrDefault(ENV_DB_TNS_ALIAS, DEFAULT_TNS_ALIAS),
+                resolveEnvOrDefault(ENV_DB_CONNECT_DESCRIPTOR, DEFAULT_CONNECT_DESCRIPTOR));
+    }
+
+    /** URL of the read pool, or null when reads share the primary pool. */
+    private static String buildReadJdbcUrl() {
+        Optional<String> alias = EnvConfig.lookup(ENV_DB_READ_TNS_ALIAS);
+        Optional<String> descriptor = EnvConfig.lookup(ENV_DB_READ_CONNECT_DESCRIPTOR);
+        if (alias.isEmpty() && descriptor.isEmpty()) {
+            return null;
+        }
+        return buildJdbcUrl(alias.orElseGet(() -> resolveEnvOrDefault(ENV_DB_TNS_ALIAS, DEFAULT_TNS_ALIAS)),
+                descriptor.orElseGet(() -> resolveEnvOrDefault(ENV_DB_CONNECT_DESCRIPTOR, DEFAULT_CONNECT_DESCRIPTOR)));
+    }
+
+    private static String buildJdbcUrl(String tnsAlias, String descriptor) {
         String tnsAdmin = System.getenv(ENV_TNS_ADMIN);
         if (tnsAdmin != null && !tnsAdmin.isBlank()) {
             Path walletDir = Paths.get(tnsAdmin).toAbsolutePath();
             if (!Files.isDirectory(walletDir)) {
                 throw new IllegalStateException("TNS_ADMIN does not point to an existing directory: " + walletDir);
             }
-            String tnsAlias = resolveEnvOrDefault(ENV_DB_TNS_ALIAS, DEFAULT_TNS_ALIAS);
             return String.format("jdbc:oracle:thin:@%s?TNS_ADMIN=%s", tnsAlias, walletDir);
         }
-
-        String descriptor = resolveEnvOrDefault(ENV_DB_CONNECT_DESCRIPTOR, DEFAULT_CONNECT_DESCRIPTOR);
         return "jdbc:oracle:thin:@" + descriptor;
     }
 
     private static String resolveEnvOrDefault(String envKey, String defaultValue) {
-        return Optional.ofNullable(System.getenv(envKey))
-                .filter(v -> !v.isBlank())
-                .orElse(defaultValue);
+        return EnvConfig.string(envKey, defaultValue);
     }
     public void testConnection() {
         try {
@@ -86,7 +299,42 @@ public class OracleDBUtil {
     }
 
     public Connection getConnection() throws SQLException {
-        return poolDataSource.getConnection();
+        return borrow(pools().writes);
+    }
+
+    /**
+     * A connection for queries that may see slightly stale data: from the read pool when
+     * there is one, otherwise the same as {@link #getConnection}.
+     */
+    public Connection getReadConnection() throws SQLException {
+        return borrow(pools().reads);
+    }
+
+    /** True if {@link #getReadConnection} uses a pool of its own. */
+    public boolean hasReadPool() throws SQLException {
+        Pools p = pools();
+        return p.reads != p.writes;
+    }
+
+    private Connection borrow(DataSource pool) throws SQLException {
+        LatencyHistogram waits = poolWait;
+        if (waits == null) {
+            return pool.getConnection();
+        }
+        long start = System.nanoTime();
+        try {
+            return pool.getConnection();
+        } catch (SQLException | RuntimeException ex) {
+            waits.error();
+            throw ex;
+        } finally {
+            waits.record(System.nanoTime() - start);
+        }
+    }
+
+    /** Time every connection borrow from now on as {@code db.pool.wait}. */
+    void recordPoolWaits(Metrics metrics) {
+        this.poolWait = metrics.histogram("db.pool.wait");
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,293 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a slow or failing database from holding sessions hostage.
+ * <ul>
+ *   <li>Deadline: each call runs on its own virtual thread and the caller waits at most
+ *       {@code deadlineMillis}. After that the call is interrupted and the caller gets a
+ *       {@link DatabaseUnavailableException}; a change may still have been committed. This
+ *       is a backstop for calls that hang outside a statement (a pool checkout, a dead
+ *       socket): {@link JdbcAccountRepository} cancels statements in the database after
+ *       DB_QUERY_TIMEOUT_SECONDS, which must stay below the deadline.</li>
+ *   <li>Circuit breaker: when at least {@code tripPercent} of the last {@code window}
+ *       calls failed or took longer than {@code slowMillis}, every call is rejected at
+ *       once for {@code openMillis}. Then a single trial call goes through: if it is
+ *       good the breaker closes, otherwise it stays open for another period.</li>
+ * </ul>
+ * IllegalArgumentException and IllegalStateException from the delegate (unknown account,
+ * insufficient funds) mean the database answered, so they count as good calls unless slow;
+ * a {@link DatabaseUnavailableException} (a cancelled statement) counts as failed.
+ * While the breaker is not closed {@link #isDegraded()} is true, and a
+ * {@link CachingAccountRepository} above this one serves last-known account lists.
+ */
+public final class ResilientAccountRepository implements AccountRepository {
+    private static final Logger logger = Logger.getLogger(ResilientAccountRepository.class.getName());
+
+    static final String ENV_DEADLINE_MILLIS = "DB_CALL_DEADLINE_MILLIS";
+    static final String ENV_SLOW_MILLIS = "DB_BREAKER_SLOW_MILLIS";
+    static final String ENV_WINDOW = "DB_BREAKER_WINDOW";
+    static final String ENV_TRIP_PERCENT = "DB_BREAKER_TRIP_PERCENT";
+    static final String ENV_OPEN_SECONDS = "DB_BREAKER_OPEN_SECONDS";
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final AccountRepository delegate;
+    private final long deadlineNanos;
+    private final long slowNanos;
+    private final int tripPercent;
+    private final long openNanos;
+    private final ExecutorService calls = Executors.newVirtualThreadPerTaskExecutor();
+
+    // breaker state, guarded by outcomes
+    private final boolean[] outcomes; // ring of the last calls, true = failed or slow
+    private int next;
+    private int recorded;
+    private int bad;
+    private State state = State.CLOSED;
+    private long openUntilNanos;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public ResilientAccountRepository(AccountRepository delegate, long deadlineMillis, long slowMillis,
+                                      int window, int tripPercent, long openMillis) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate repository is required");
+        if (deadlineMillis <= 0 || slowMillis <= 0 || openMillis <= 0) {
+            throw new IllegalArgumentException("deadline, slow-call and open times must be positive");
+        }
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        if (tripPercent <= 0 || tripPercent > 100) {
+            throw new IllegalArgumentException("tripPercent must be between 1 and 100");
+        }
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+        this.tripPercent = tripPercent;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.outcomes = new boolean[window];
+    }
+
+    /**
+     * DB_CALL_DEADLINE_MILLIS (default 3000), DB_BREAKER_SLOW_MILLIS (1000),
+     * DB_BREAKER_WINDOW (20 calls), DB_BREAKER_TRIP_PERCENT (50), DB_BREAKER_OPEN_SECONDS (15).
+     */
+    static ResilientAccountRepository fromEnv(AccountRepository delegate) {
+        return new ResilientAccountRepository(delegate,
+                EnvConfig.integer(ENV_DEADLINE_MILLIS, 3_000),
+                EnvConfig.integer(ENV_SLOW_MILLIS, 1_000),
+                EnvConfig.integer(ENV_WINDOW, 20),
+                EnvConfig.integer(ENV_TRIP_PERCENT, 50),
+                TimeUnit.SECONDS.toMillis(EnvConfig.integer(ENV_OPEN_SECONDS, 15)));
+    }
+
+    public State state() {
+        synchronized (outcomes) {
+            return state;
+        }
+    }
+
+    @Override
+    public boolean isDegraded() {
+        return state() != State.CLOSED;
+    }
+
+    /** Calls turned away while the breaker was open. */
+    public long rejectedCalls() {
+        return rejected.sum();
+    }
+
+    /** Calls abandoned at the deadline. */
+    public long timedOutCalls() {
+        return timedOut.sum();
+    }
+
+    // ---- calls ---------------------------------------------------------------------
+
+    @Override
+    public List<Account> findAllByCustomer(int customerNumber) {
+        return call(() -> delegate.findAllByCustomer(customerNumber));
+    }
+
+    @Override
+    public Account findOneForCustomer(int customerNumber, int accountNumber) {
+        return call(() -> delegate.findOneForCustomer(customerNumber, accountNumber));
+    }
+
+    @Override
+    public Account findByAccountNumber(int accountNumber) {
+        return call(() -> delegate.findByAccountNumber(accountNumber));
+    }
+
+    @Override
+    public void save(Account account) {
+        call(() -> {
+            delegate.save(account);
+            return null;
+        });
+    }
+
+    @Override
+    public int create(int customerNumber, AccountType type, long initialCents) {
+        return call(() -> delegate.create(customerNumber, type, initialCents));
+    }
+
+    @Override
+    public int[] createAll(List<NewAccount> batch) {
+        return call(() -> delegate.createAll(batch));
+    }
+
+    @Override
+    public long deposit(int customerNumber, int accountNumber, long cents) {
+        return call(() -> delegate.deposit(customerNumber, accountNumber, cents));
+    }
+
+    @Override
+    public long withdraw(int customerNumber, int accountNumber, long cents) {
+        return call(() -> delegate.withdraw(customerNumber, accountNumber, cents));
+    }
+
+    @Override
+    public AccountService.TransferResult transfer(int customerNumber, int fromAccount, int toAccount, long cents) {
+        return call(() -> delegate.transfer(customerNumber, fromAccount, toAccount, cents));
+    }
+
+    @Override
+    public AccountService.TransferResult transferToAccount(int customerNumber, int fromAccount, int toAccount, long cents) {
+        return call(() -> delegate.transferToAccount(customerNumber, fromAccount, toAccount, cents));
+    }
+
+    /**
+     * Already asynchronous, so no deadline; only refused while the breaker is not closed.
+     * Its outcome does not feed the breaker.
+     */
+    @Override
+    public CompletableFuture<Void> depositDeferred(int customerNumber, int accountNumber, long cents) {
+        if (isDegraded()) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(unavailable());
+        }
+        return delegate.depositDeferred(customerNumber, accountNumber, cents);
+    }
+
+    @Override
+    public List<AccountTransaction> history(int customerNumber, int accountNumber, long beforeId, int limit) {
+        return call(() -> delegate.history(customerNumber, accountNumber, beforeId, limit));
+    }
+
+    private <T> T call(Callable<T> body) {
+        if (!tryAcquire()) {
+            rejected.increment();
+            throw unavailable();
+        }
+        long start = System.nanoTime();
+        Future<T> future = calls.submit(body);
+        try {
+            T result = future.get(deadlineNanos, TimeUnit.NANOSECONDS);
+            record(System.nanoTime() - start > slowNanos);
+            return result;
+        } catch (TimeoutException ex) {
+            future.cancel(true);
+            timedOut.increment();
+            record(true);
+            throw new DatabaseUnavailableException(
+                    "The bank system did not respond in time. Check your balance before trying again.", ex);
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            record(true);
+            throw new DatabaseUnavailableException("Interrupted while waiting for the bank system", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            boolean answered = (cause instanceof IllegalArgumentException || cause instanceof IllegalStateException)
+                    && !(cause instanceof DatabaseUnavailableException);
+            record(!answered || System.nanoTime() - start > slowNanos);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static DatabaseUnavailableException unavailable() {
+        return new DatabaseUnavailableException("The bank system is not responding. Please try again later.");
+    }
+
+    // ---- breaker -------------------------------------------------------------------
+
+    /** True if a call may go ahead; an expired open period admits exactly one trial call. */
+    private boolean tryAcquire() {
+        synchronized (outcomes) {
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (System.nanoTime() - openUntilNanos < 0) {
+                        return false;
+                    }
+                    state = State.HALF_OPEN;
+                    return true;
+                default:
+                    return false; // the trial call is still running
+            }
+        }
+    }
+
+    private void record(boolean failedOrSlow) {
+        synchronized (outcomes) {
+            switch (state) {
+                case HALF_OPEN:
+                    if (failedOrSlow) {
+                        open("trial call failed or was slow");
+                    } else {
+                        state = State.CLOSED;
+                        logger.info("Database calls are healthy again; circuit closed");
+                    }
+                    return;
+                case OPEN:
+                    return; // admitted before the breaker opened
+                default:
+                    break;
+            }
+            if (recorded == outcomes.length) {
+                bad -= outcomes[next] ? 1 : 0;
+            } else {
+                recorded++;
+            }
+            outcomes[next] = failedOrSlow;
+            bad += failedOrSlow ? 1 : 0;
+            next = (next + 1) % outcomes.length;
+            // judge only on a reasonably full window, so one early failure cannot trip it
+            if (recorded * 2 >= outcomes.length && bad * 100 >= tripPercent * recorded) {
+                open(bad + " of the last " + recorded + " calls failed or were slow");
+            }
+        }
+    }
+
+    private void open(String reason) {
+        logger.warning("Database circuit open for " + TimeUnit.NANOSECONDS.toMillis(openNanos) + " ms: " + reason);
+        state = State.OPEN;
+        openUntilNanos = System.nanoTime() + openNanos;
+        next = 0;
+        recorded = 0;
+        bad = 0;
+        Arrays.fill(outcomes, false);
+    }
+}
@@ -0,0 +1,53 @@
+package org.example;
+
+/**
+ * A fixed set of monitor objects that integer keys hash onto.
+ * <p>
+ * Code that needs two stripes at once must take them in ascending {@link #stripe} order
+ * (see {@link #first}/{@link #second}); that single global order is what keeps
+ * transfers deadlock-free without a global lock.
+ */
+final class StripedLocks {
+
+    /** Padded so neighbouring stripes don't share a cache line. */
+    @SuppressWarnings("unused")
+    private static final class Stripe {
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    StripedLocks(int minStripes) {
+        int n = Integer.highestOneBit(Math.max(1, minStripes - 1)) << 1;
+        stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe();
+        }
+        mask = n - 1;
+    }
+
+    /** Default sizing: plenty of stripes per core so unrelated accounts rarely collide. */
+    static StripedLocks forAvailableProcessors() {
+        return new StripedLocks(Runtime.getRuntime().availableProcessors() * 64);
+    }
+
+    int stripe(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    Object lock(int key) {
+        return stripes[stripe(key)];
+    }
+
+    /** The lock to take first when two keys must be held together. */
+    Object first(int a, int b) {
+        return stripes[Math.min(stripe(a), stripe(b))];
+    }
+
+    /** The lock to take second; the same object as {@link #first} when both keys share a stripe. */
+    Object second(int a, int b) {
+        return stripes[Math.max(stripe(a), stripe(b))];
+    }
+}
@@ -0,0 +1,183 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One segment of the append-only transaction journal: fixed 32-byte records in a
+ * memory-mapped file that grows one region at a time.
+ * <p>
+ * An append reserves its slot with a single atomic add and writes straight into the
+ * mapping, so there is no lock and no system call on the hot path. The record's kind is
+ * written last (release store) and every record carries a check value; replay skips slots
+ * that are still zero or whose check does not match (a write torn by a crash).
+ * <p>
+ * Records are in the OS page cache as soon as {@link #append} returns, so they survive a
+ * crash of the process; {@link #force()} is what makes them survive a crash of the machine.
+ * <pre>
+ *  0 int  kind          16 long cents (signed)
+ *  4 int  customer      24 long check
+ *  8 int  account
+ * 12 int  other (account type ordinal, destination account of a transfer, or a run date)
+ * </pre>
+ */
+final class TransactionJournal implements AutoCloseable {
+    static final int RECORD_BYTES = 32;
+
+    /** New account: customer, account, other = type, cents = opening balance. */
+    static final int CREATE = 1;
+    /** Absolute balance from save(); creates the account if missing. Same fields as CREATE. */
+    static final int SET = 2;
+    /** Deposit (cents > 0) or withdrawal (cents < 0) on account. */
+    static final int DELTA = 3;
+    /** Move cents from account to other. */
+    static final int TRANSFER = 4;
+    /** One day's interest credited to account: other = run date (epoch day), cents = interest. */
+    static final int INTEREST = 5;
+    /** Interest run started: other = run date (epoch day), customer = annual bp, account = high slot. */
+    static final int INTEREST_RUN = 6;
+    /** Interest run for the date in other finished. */
+    static final int INTEREST_DONE = 7;
+
+    private static final VarHandle INTS =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long MAX_READ_WINDOW = 1L << 30;
+
+    /** Receives each valid record during {@link #replay}. */
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(int kind, int customer, int account, int other, long cents);
+    }
+
+    private final FileChannel channel;
+    private final long regionBytes;
+    private final AtomicLong position = new AtomicLong();
+    private volatile MappedByteBuffer[] regions = new MappedByteBuffer[0];
+
+    private TransactionJournal(FileChannel channel, long regionBytes) {
+        this.channel = channel;
+        this.regionBytes = regionBytes;
+    }
+
+    /** Start a new, empty segment; fails if the file already exists. */
+    static TransactionJournal create(Path file, long regionBytes) throws IOException {
+        if (regionBytes <= 0 || regionBytes % RECORD_BYTES != 0 || regionBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("regionBytes must be a positive multiple of " + RECORD_BYTES);
+        }
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        TransactionJournal journal = new TransactionJournal(channel, regionBytes);
+        journal.mapRegion(0);
+        return journal;
+    }
+
+    /**
+     * Append one record.
+     * @return the record's index in this segment (0-based)
+     */
+    long append(int kind, int customer, int account, int other, long cents) {
+        long pos = position.getAndAdd(RECORD_BYTES);
+        MappedByteBuffer region = region((int) (pos / regionBytes));
+        int off = (int) (pos % regionBytes);
+        region.putInt(off + 4, customer);
+        region.putInt(off + 8, account);
+        region.putInt(off + 12, other);
+        region.putLong(off + 16, cents);
+        region.putLong(off + 24, check(kind, customer, account, other, cents));
+        INTS.setRelease(region, off, kind);
+        return pos / RECORD_BYTES;
+    }
+
+    /** Records appended so far. */
+    long records() {
+        return position.get() / RECORD_BYTES;
+    }
+
+    /** Flush every mapped region to the storage device. */
+    void force() {
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * Read a segment front to back.
+     * @return the number of records visited
+     */
+    static long replay(Path file, RecordVisitor visitor) throws IOException {
+        long visited = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size() - channel.size() % RECORD_BYTES;
+            for (long start = 0; start < size; start += MAX_READ_WINDOW) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(MAX_READ_WINDOW, size - start));
+                window.order(ByteOrder.LITTLE_ENDIAN);
+                for (int off = 0; off < window.limit(); off += RECORD_BYTES) {
+                    int kind = window.getInt(off);
+                    if (kind == 0) {
+                        continue;
+                    }
+                    int customer = window.getInt(off + 4);
+                    int account = window.getInt(off + 8);
+                    int other = window.getInt(off + 12);
+                    long cents = window.getLong(off + 16);
+                    if (window.getLong(off + 24) != check(kind, customer, account, other, cents)) {
+                        continue;
+                    }
+                    visitor.visit(kind, customer, account, other, cents);
+                    visited++;
+                }
+            }
+        }
+        return visited;
+    }
+
+    // ---- internals -----------------------------------------------------------------
+
+    private MappedByteBuffer region(int index) {
+        MappedByteBuffer[] current = regions;
+        return index < current.length ? current[index] : mapRegion(index);
+    }
+
+    private synchronized MappedByteBuffer mapRegion(int index) {
+        MappedByteBuffer[] current = regions;
+        try {
+            while (current.length <= index) {
+                // mapping past the end grows the file (sparse until written)
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE,
+                        current.length * regionBytes, regionBytes);
+                region.order(ByteOrder.LITTLE_ENDIAN);
+                current = Arrays.copyOf(current, current.length + 1);
+                current[current.length - 1] = region;
+                regions = current;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not grow the transaction journal", ex);
+        }
+        return current[index];
+    }
+
+    private static long check(int kind, int customer, int account, int other, long cents) {
+        long h = kind * 0x9E3779B97F4A7C15L;
+        h = (h ^ customer) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ account) * 0x94D049BB133111EBL;
+        h = (h ^ other) * 0x9E3779B97F4A7C15L;
+        h = (h ^ cents) * 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,208 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind queue for deposits: amounts are summed per account and flushed as one
+ * JDBC batch in a single commit, either every {@code flushIntervalMillis} or as soon as
+ * {@code maxBatchSize} accounts are pending.
+ * <p>
+ * Only deltas are deferred. They commute with the immediate, conditional updates that
+ * withdrawals and transfers use, so a late flush can never overwrite a newer balance.
+ * The flip side: a deposit is not visible (or spendable) until its future completes.
+ */
+final class WriteBehindBalanceWriter implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(WriteBehindBalanceWriter.class.getName());
+
+    static final String ENV_FLUSH_MILLIS = "DB_WRITE_BEHIND_FLUSH_MS";
+    static final String ENV_BATCH_SIZE = "DB_WRITE_BEHIND_BATCH_SIZE";
+
+    private static final String SQL_ADD_BALANCE =
+            "UPDATE CUSTOMERACCOUNTS SET ACCOUNTBALANCE = ACCOUNTBALANCE + ?, ACCOUNTVERSION = ACCOUNTVERSION + 1 " +
+            "WHERE CUSTOMERNUMBER = ? AND ACCOUNTNUMBER = ?";
+
+    // one history row per account and flush (the merged amount), in the same commit
+    private static final String SQL_ADD_HISTORY =
+            JdbcAccountRepository.HISTORY_INSERT +
+            "SELECT ACCOUNTHISTORY_SEQ.NEXTVAL, CUSTOMERNUMBER, ACCOUNTNUMBER, 'DEPOSIT', ?, " +
+            "ACCOUNTBALANCE, 0, SYSTIMESTAMP FROM CUSTOMERACCOUNTS " +
+            "WHERE CUSTOMERNUMBER = ? AND ACCOUNTNUMBER = ?";
+
+    /** Deposits for one account that haven't been flushed yet. */
+    private static final class Pending {
+        final int customerNumber;
+        final int accountNumber;
+        long cents;
+        final List<CompletableFuture<Void>> waiters = new ArrayList<>(1);
+
+        Pending(int customerNumber, int accountNumber) {
+            this.customerNumber = customerNumber;
+            this.accountNumber = accountNumber;
+        }
+    }
+
+    private final OracleDBUtil db;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService flusher;
+    private final Object flushLock = new Object();
+
+    // keyed by (customer, account); guarded by this
+    private Map<Long, Pending> pending = new LinkedHashMap<>();
+    private boolean closed;
+
+    WriteBehindBalanceWriter(OracleDBUtil db, int maxBatchSize, long flushIntervalMillis) {
+        if (maxBatchSize <= 0 || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("batch size and flush interval must be positive");
+        }
+        this.db = Objects.requireNonNull(db, "OracleDBUtil is required");
+        this.maxBatchSize = maxBatchSize;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "balance-write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** @return a writer configured from the environment, or null when write-behind is off (the default) */
+    static WriteBehindBalanceWriter fromEnv(OracleDBUtil db) {
+        int flushMillis = EnvConfig.integer(ENV_FLUSH_MILLIS, 0);
+        if (flushMillis <= 0) {
+            return null;
+        }
+        return new WriteBehindBalanceWriter(db, EnvConfig.integer(ENV_BATCH_SIZE, 500), flushMillis);
+    }
+
+    /**
+     * Queue a deposit. The future completes after the commit that includes it, or fails
+     * with IllegalArgumentException if the account does not belong to the customer.
+     */
+    CompletableFuture<Void> addDelta(int customerNumber, int accountNumber, long cents) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        boolean flushNow;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Write-behind queue is closed");
+            }
+            Pending p = pending.computeIfAbsent(key(customerNumber, accountNumber),
+                    k -> new Pending(customerNumber, accountNumber));
+            p.cents = Math.addExact(p.cents, cents);
+            p.waiters.add(done);
+            flushNow = pending.size() >= maxBatchSize;
+        }
+        if (flushNow) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException closing) {
+                // close() is flushing everything that is queued anyway
+            }
+        }
+        return done;
+    }
+
+    private static long key(int customerNumber, int accountNumber) {
+        return ((long) customerNumber << 32) | (accountNumber & 0xFFFF_FFFFL);
+    }
+
+    /** Write everything queued so far and wait for the commit. */
+    void flush() throws SQLException {
+        synchronized (flushLock) {
+            Map<Long, Pending> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            }
+            try {
+                int[] counts = writeBatch(batch.values());
+                int i = 0;
+                for (Pending p : batch.values()) {
+                    int count = counts[i++];
+                    for (CompletableFuture<Void> waiter : p.waiters) {
+                        if (count == 0) {
+                            waiter.completeExceptionally(new IllegalArgumentException("Account not found for this customer"));
+                        } else {
+                            waiter.complete(null);
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException ex) {
+                RuntimeException failure = new RuntimeException("Failed to flush " + batch.size() + " deferred deposit(s)", ex);
+                for (Pending p : batch.values()) {
+                    p.waiters.forEach(w -> w.completeExceptionally(failure));
+                }
+                throw ex;
+            }
+        }
+    }
+
+    private int[] writeBatch(Iterable<Pending> batch) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(SQL_ADD_BALANCE);
+                 PreparedStatement history = conn.prepareStatement(SQL_ADD_HISTORY)) {
+                for (Pending p : batch) {
+                    ps.setLong(1, p.cents);
+                    ps.setInt(2, p.customerNumber);
+                    ps.setInt(3, p.accountNumber);
+                    ps.addBatch();
+                    history.setLong(1, p.cents);
+                    history.setInt(2, p.customerNumber);
+                    history.setInt(3, p.accountNumber);
+                    history.addBatch();
+                }
+                int[] counts = ps.executeBatch();
+                history.executeBatch(); // inserts nothing for accounts the update missed
+                conn.commit();
+                for (int i = 0; i < counts.length; i++) {
+                    // drivers may report "succeeded, count unknown"
+                    if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                        counts[i] = 1;
+                    }
+                }
+                return counts;
+            } catch (SQLException | RuntimeException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Deferred deposit flush failed", ex);
+        }
+    }
+
+    /** Stop accepting deposits, flush what is queued, and stop the flusher thread. */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flusher.shutdown();
+        flushQuietly();
+    }
+}
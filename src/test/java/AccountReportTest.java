@@ -0,0 +1,55 @@
+import org.example.AccountReport;
+import org.example.AccountType;
+import org.example.ConcurrentLedger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class AccountReportTest {
+
+    @Test
+    void ledgerReport_matchesTotalsComputedByHand() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int customers = 2_000;
+        long checking = 0;
+        long savings = 0;
+        for (int c = 0; c < customers; c++) {
+            // customer c has c cents in checking and 2c in savings; customer 0 has two zero balances
+            ledger.create(c, AccountType.CHECKING, c);
+            ledger.create(c, AccountType.SAVINGS, 2L * c);
+            checking += c;
+            savings += 2L * c;
+        }
+        int whale = ledger.create(customers - 1, AccountType.SAVINGS, 500_000_000L);
+        savings += 500_000_000L;
+
+        AccountReport report = AccountReport.of(ledger);
+
+        Assertions.assertEquals(2L * customers + 1, report.accounts());
+        Assertions.assertEquals(customers, report.customers());
+        Assertions.assertEquals(customers, report.accounts(AccountType.CHECKING));
+        Assertions.assertEquals(checking, report.totalCents(AccountType.CHECKING));
+        Assertions.assertEquals(savings, report.totalCents(AccountType.SAVINGS));
+        Assertions.assertEquals(checking + savings, report.totalCents());
+
+        List<AccountReport.Ranked> topAccounts = report.topAccounts();
+        Assertions.assertEquals(whale, topAccounts.get(0).number);
+        Assertions.assertEquals(2L * (customers - 1), topAccounts.get(1).cents);
+        List<AccountReport.Ranked> topCustomers = report.topCustomers();
+        Assertions.assertEquals(customers - 1, topCustomers.get(0).number);
+        Assertions.assertEquals(3L * (customers - 1) + 500_000_000L, topCustomers.get(0).cents);
+        Assertions.assertEquals(3L * (customers - 2), topCustomers.get(1).cents);
+
+        long[] buckets = report.distribution();
+        Assertions.assertEquals(0, buckets[0]);            // negative
+        Assertions.assertEquals(2, buckets[1]);            // customer 0's two empty accounts
+        Assertions.assertEquals(1, buckets[buckets.length - 2]); // the $5M account
+        long sum = 0;
+        for (long b : buckets) {
+            sum += b;
+        }
+        Assertions.assertEquals(report.accounts(), sum);
+        Assertions.assertTrue(report.toString().contains("$5,000,"));
+    }
+}
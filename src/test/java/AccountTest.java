@@ -34,4 +34,16 @@ class AccountTest {
         Assertions.assertFalse(ok);
         Assertions.assertEquals(100.00, a.getAccountBalance(), 0.0001);
     }
+
+    @Test
+    void balance_isExactCents_noDriftAcrossManyDimes() {
+        Account a = Account.ofCents(123, 1001, AccountType.CHECKING, 0);
+
+        for (int i = 0; i < 1_000; i++) {
+            a.deposit(0.10);
+        }
+
+        Assertions.assertEquals(10_000, a.getBalanceCents());
+        Assertions.assertEquals(100.00, a.getAccountBalance());
+    }
 }
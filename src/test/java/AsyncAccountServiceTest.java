@@ -0,0 +1,153 @@
+import org.example.AccountService;
+import org.example.AsyncAccountService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class AsyncAccountServiceTest {
+
+    /** Records the order operations reach the real service in. */
+    private static final class RecordingService implements AccountService {
+        final List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch gate;
+
+        RecordingService(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        private void await() {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public double deposit(int customerNumber, int accountNumber, double amount) {
+            await();
+            applied.add("deposit " + accountNumber + " " + amount);
+            return 0;
+        }
+
+        @Override
+        public double withdraw(int customerNumber, int accountNumber, double amount) {
+            await();
+            applied.add("withdraw " + accountNumber + " " + amount);
+            return 0;
+        }
+
+        @Override
+        public TransferResult transfer(int customerNumber, int fromAccount, int toAccount, double amount) {
+            await();
+            applied.add("transfer " + fromAccount + "->" + toAccount);
+            return new TransferResult(0, 0);
+        }
+
+        @Override
+        public TransferResult transferToAccount(int customerNumber, int fromAccount, int toAccount, double amount) {
+            await();
+            applied.add("transferToAccount " + fromAccount + "->" + toAccount);
+            return new TransferResult(0, 0);
+        }
+
+        @Override
+        public CompletableFuture<Void> depositDeferred(int customerNumber, int accountNumber, double amount) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test
+    void pipelinedOperations_onOneAccount_runInSubmissionOrder() throws Exception {
+        RecordingService service = new RecordingService(new CountDownLatch(0));
+        try (AsyncAccountService async = new AsyncAccountService(service, 8, 1_000, 1, TimeUnit.SECONDS)) {
+            List<CompletableFuture<?>> all = new ArrayList<>();
+            for (int i = 1; i <= 50; i++) {
+                all.add(async.deposit(1, 1001, i));
+                all.add(async.transfer(1, 1001, 1002, i));
+                all.add(async.withdraw(1, 1002, i));
+            }
+            CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+            // only operations sharing an account are ordered; the two accounts may interleave
+            List<String> expected1001 = new ArrayList<>();
+            List<String> expected1002 = new ArrayList<>();
+            for (int i = 1; i <= 50; i++) {
+                expected1001.add("deposit 1001 " + (double) i);
+                expected1001.add("transfer 1001->1002");
+                expected1002.add("transfer 1001->1002");
+                expected1002.add("withdraw 1002 " + (double) i);
+            }
+            Assertions.assertEquals(expected1001, touching(service.applied, "1001"));
+            Assertions.assertEquals(expected1002, touching(service.applied, "1002"));
+        }
+    }
+
+    private static List<String> touching(List<String> applied, String accountNumber) {
+        List<String> list = new ArrayList<>();
+        for (String op : applied) {
+            if (op.contains(accountNumber)) {
+                list.add(op);
+            }
+        }
+        return list;
+    }
+
+    @Test
+    void saturated_rejectsInsteadOfQueueingForever() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        RecordingService service = new RecordingService(gate);
+        try (AsyncAccountService async = new AsyncAccountService(service, 1, 2, 0, TimeUnit.MILLISECONDS)) {
+            CompletableFuture<Double> a = async.deposit(1, 1001, 1);
+            CompletableFuture<Double> b = async.deposit(1, 1002, 1);
+            CompletableFuture<Double> rejected = async.deposit(1, 1003, 1);
+
+            ExecutionException ex = Assertions.assertThrows(ExecutionException.class, rejected::get);
+            Assertions.assertTrue(ex.getCause() instanceof RejectedExecutionException);
+
+            gate.countDown();
+            a.get(5, TimeUnit.SECONDS);
+            b.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void close_waitsForChainedOperations() throws Exception {
+        RecordingService service = new RecordingService(new CountDownLatch(0));
+        AsyncAccountService async = new AsyncAccountService(service, 2, 1_000, 1, TimeUnit.SECONDS);
+        List<CompletableFuture<?>> all = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            all.add(async.deposit(1, 1001, i));
+        }
+        async.close();
+
+        for (CompletableFuture<?> f : all) {
+            Assertions.assertTrue(f.isDone() && !f.isCompletedExceptionally());
+        }
+        Assertions.assertEquals(20, service.applied.size());
+        ExecutionException ex = Assertions.assertThrows(ExecutionException.class,
+                () -> async.deposit(1, 1001, 1).get());
+        Assertions.assertTrue(ex.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    void close_twice_returnsInsteadOfBlocking() {
+        RecordingService service = new RecordingService(new CountDownLatch(0));
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            try (AsyncAccountService async = new AsyncAccountService(service, 2, 10, 1, TimeUnit.SECONDS)) {
+                async.deposit(1, 1001, 1).get(5, TimeUnit.SECONDS);
+                async.close(); // and again when the try block ends
+            }
+        });
+        Assertions.assertEquals(1, service.applied.size());
+    }
+}
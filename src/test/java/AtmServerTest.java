@@ -0,0 +1,64 @@
+import org.example.AppConfig;
+import org.example.AtmServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two terminals connected to one server at the same time, sharing the dev wiring.
+ */
+class AtmServerTest {
+
+    @Test
+    void concurrentSessions_runIndependentlyAgainstSharedAccounts() throws Exception {
+        try (AtmServer server = new AtmServer(AppConfig.devSessions(), 0, 10)) {
+            Thread acceptor = new Thread(() -> {
+                try {
+                    server.serve();
+                } catch (Exception ignored) {
+                    // closed at the end of the test
+                }
+            });
+            acceptor.start();
+
+            // customer 952141 deposits 50 into CHECKING #1001 (500 -> 550)
+            CompletableFuture<String> first = CompletableFuture.supplyAsync(
+                    () -> runSession(server.port(), "952141", "191904", "2", "1", "50", "5"));
+            // customer 989947 deposits 25 into CHECKING #2001 (250 -> 275)
+            CompletableFuture<String> second = CompletableFuture.supplyAsync(
+                    () -> runSession(server.port(), "989947", "717976", "2", "1", "25", "5"));
+
+            String out1 = first.get();
+            String out2 = second.get();
+
+            assertTrue(out1.contains("New balance: $550.00"), out1);
+            assertTrue(out2.contains("New balance: $275.00"), out2);
+            assertTrue(out1.contains("Thank you for using ATM. Bye!"));
+            assertTrue(out2.contains("Thank you for using ATM. Bye!"));
+        }
+    }
+
+    private static String runSession(int port, String... lines) {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            OutputStream toServer = socket.getOutputStream();
+            toServer.write((String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+            toServer.flush();
+
+            // the server closes the connection when the session exits
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            InputStream fromServer = socket.getInputStream();
+            fromServer.transferTo(received);
+            return received.toString(StandardCharsets.UTF_8);
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+import org.example.AccountType;
+import org.example.BatchProcessor;
+import org.example.ConcurrentLedger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+class BatchProcessorTest {
+
+    @Test
+    void process_appliesLinesInOrderAndReportsEachOne() throws Exception {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int checking = ledger.create(952141, AccountType.CHECKING, 10_000);
+        int savings = ledger.create(952141, AccountType.SAVINGS, 0);
+        int payee = ledger.create(989947, AccountType.CHECKING, 0);
+        String csv = String.join("\n",
+                "customerNumber,operation,account,toAccount,cents",
+                "952141,WITHDRAW," + checking + ",12000",            // declined: only $100
+                "952141,deposit," + checking + ",5000",
+                "952141,WITHDRAW," + checking + ",12000",            // now it fits
+                "952141,TRANSFER," + checking + "," + savings + ",1000",
+                "952141,PAY," + checking + "," + payee + ",500",
+                "",
+                "952141,DEPOSIT," + payee + ",100",                  // not theirs
+                "952141,REFUND," + checking + ",100",
+                "952141,DEPOSIT");                                   // message holds commas
+        StringWriter out = new StringWriter();
+
+        BatchProcessor.Result result = BatchProcessor.process(new BufferedReader(new StringReader(csv)), out,
+                ledger, 4, 3);
+
+        Assertions.assertEquals(8, result.lines);
+        Assertions.assertEquals(4, result.applied);
+        Assertions.assertEquals(4, result.failed);
+        String[] status = out.toString().split("\n");
+        Assertions.assertTrue(status[0].startsWith("2,DECLINED,"), status[0]);
+        Assertions.assertEquals("3,OK,15000", status[1]);
+        Assertions.assertEquals("4,OK,3000", status[2]);
+        Assertions.assertEquals("6,OK,1500", status[4]);
+        Assertions.assertTrue(status[5].startsWith("8,REJECTED,"), status[5]);
+        Assertions.assertTrue(status[6].startsWith("9,INVALID,"), status[6]);
+        Assertions.assertEquals("10,INVALID,\"expected customerNumber,operation,account[,toAccount],cents"
+                + " but got '952141,DEPOSIT'\"", status[7]);
+        Assertions.assertEquals(1_500, ledger.balanceCents(checking));
+        Assertions.assertEquals(1_000, ledger.balanceCents(savings));
+        Assertions.assertEquals(500, ledger.balanceCents(payee));
+    }
+}
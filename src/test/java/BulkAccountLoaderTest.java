@@ -0,0 +1,30 @@
+import org.example.BulkAccountLoader;
+import org.example.ConcurrentLedger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+class BulkAccountLoaderTest {
+
+    @Test
+    void load_createsAccountsInBatchesAndSkipsBadRows() throws Exception {
+        String csv = String.join("\n",
+                "customerNumber,accountType,initialCents",
+                "952141,CHECKING,50000",
+                "952141,savings,0",
+                "989947,BROKERAGE,100",   // unknown type
+                "989947,CHECKING,-5",     // negative
+                "",
+                "989947,CHECKING,25000");
+        ConcurrentLedger ledger = new ConcurrentLedger();
+
+        BulkAccountLoader.Result result = BulkAccountLoader.load(new BufferedReader(new StringReader(csv)), ledger, 2);
+
+        Assertions.assertEquals(3, result.created);
+        Assertions.assertEquals(2, result.rejected);
+        Assertions.assertEquals(2, ledger.findAllByCustomer(952141).size());
+        Assertions.assertEquals(250.00, ledger.findAllByCustomer(989947).get(0).getAccountBalance(), 0.0001);
+    }
+}
@@ -0,0 +1,114 @@
+import org.example.Account;
+import org.example.AccountConflictException;
+import org.example.AccountType;
+import org.example.CachingAccountRepository;
+import org.example.ConcurrentLedger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+class CachingAccountRepositoryTest {
+
+    @Test
+    void repeatedReads_areServedFromCache() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        ledger.create(123, AccountType.CHECKING, 10_000);
+        CachingAccountRepository cache = new CachingAccountRepository(ledger, 100, 1, TimeUnit.MINUTES);
+
+        cache.findAllByCustomer(123);
+        cache.findAllByCustomer(123);
+        List<Account> list = cache.findAllByCustomer(123);
+
+        Assertions.assertEquals(100.00, list.get(0).getAccountBalance(), 0.0001);
+        Assertions.assertEquals(1, cache.stats().misses);
+        Assertions.assertEquals(2, cache.stats().hits);
+    }
+
+    @Test
+    void singleAccountLookup_seesWritesMadeElsewhere() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int acct = ledger.create(123, AccountType.CHECKING, 10_000);
+        CachingAccountRepository cache = new CachingAccountRepository(ledger, 100, 1, TimeUnit.MINUTES);
+
+        cache.findAllByCustomer(123);
+        ledger.deposit(123, acct, 2_500); // another process, not through the cache
+
+        Assertions.assertEquals(125.00, cache.findOneForCustomer(123, acct).getAccountBalance(), 0.0001);
+        Assertions.assertEquals(100.00, cache.findAllByCustomer(123).get(0).getAccountBalance(), 0.0001);
+    }
+
+    @Test
+    void mutationThroughCache_invalidatesCustomer() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int acct = ledger.create(123, AccountType.CHECKING, 10_000);
+        CachingAccountRepository cache = new CachingAccountRepository(ledger, 100, 1, TimeUnit.MINUTES);
+
+        cache.findAllByCustomer(123);
+        cache.deposit(123, acct, 500);
+
+        List<Account> after = cache.findAllByCustomer(123);
+        Assertions.assertEquals(105.00, after.get(0).getAccountBalance(), 0.0001);
+        Assertions.assertEquals(2, cache.stats().misses);
+    }
+
+    @Test
+    void payment_invalidatesPayeeFromTransferResult() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int payer = ledger.create(123, AccountType.CHECKING, 10_000);
+        int payee = ledger.create(456, AccountType.CHECKING, 1_000);
+        CachingAccountRepository cache = new CachingAccountRepository(ledger, 100, 1, TimeUnit.MINUTES);
+
+        cache.findAllByCustomer(456);
+        Assertions.assertEquals(456, cache.transferToAccount(123, payer, payee, 2_500).toCustomerNumber);
+
+        Assertions.assertEquals(35.00, cache.findOneForCustomer(456, payee).getAccountBalance(), 0.0001);
+    }
+
+    @Test
+    void cachedCopies_keepTheirVersion_soSaveStillComparesIt() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int acct = ledger.create(123, AccountType.CHECKING, 10_000);
+        CachingAccountRepository cache = new CachingAccountRepository(ledger, 100, 1, TimeUnit.MINUTES);
+        ledger.deposit(123, acct, 100);
+
+        Account cached = cache.findOneForCustomer(123, acct);
+        Assertions.assertEquals(ledger.findOneForCustomer(123, acct).getVersion(), cached.getVersion());
+        cached.deposit(1.00);
+        cache.save(cached);
+
+        Account stale = cache.findOneForCustomer(123, acct);
+        ledger.withdraw(123, acct, 50); // behind the cache's back
+        Assertions.assertThrows(AccountConflictException.class, () -> cache.save(stale));
+    }
+
+    @Test
+    void callersCannotChangeCachedAccounts() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int acct = ledger.create(123, AccountType.CHECKING, 10_000);
+        CachingAccountRepository cache = new CachingAccountRepository(ledger, 100, 1, TimeUnit.MINUTES);
+
+        cache.findOneForCustomer(123, acct).deposit(1_000.00);
+
+        Assertions.assertEquals(100.00, cache.findOneForCustomer(123, acct).getAccountBalance(), 0.0001);
+    }
+
+    @Test
+    void leastRecentlyUsedCustomer_isEvicted() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        ledger.create(1, AccountType.CHECKING, 100);
+        ledger.create(2, AccountType.CHECKING, 100);
+        ledger.create(3, AccountType.CHECKING, 100);
+        CachingAccountRepository cache = new CachingAccountRepository(ledger, 2, 1, TimeUnit.MINUTES);
+
+        cache.findAllByCustomer(1);
+        cache.findAllByCustomer(2);
+        cache.findAllByCustomer(1); // 2 is now least recently used
+        cache.findAllByCustomer(3);
+
+        Assertions.assertEquals(1, cache.stats().evictions);
+        cache.findAllByCustomer(1);
+        Assertions.assertEquals(2, cache.stats().hits);
+    }
+}
@@ -0,0 +1,211 @@
+import org.example.Account;
+import org.example.AccountConflictException;
+import org.example.AccountService;
+import org.example.AccountTransaction;
+import org.example.AccountType;
+import org.example.ConcurrentLedger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+class ConcurrentLedgerTest {
+
+    @Test
+    void depositWithdrawAndTransfer_workInCents() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int checking = ledger.create(123, AccountType.CHECKING, 10_000);
+        int savings = ledger.create(123, AccountType.SAVINGS, 0);
+
+        Assertions.assertEquals(10_050, ledger.deposit(123, checking, 50));
+        Assertions.assertEquals(9_000, ledger.withdraw(123, checking, 1_050));
+
+        AccountService.TransferResult res = ledger.transfer(123, checking, savings, 4_000);
+        Assertions.assertEquals(50.00, res.fromNewBalance, 0.0001);
+        Assertions.assertEquals(40.00, res.toNewBalance, 0.0001);
+        Assertions.assertEquals(2, ledger.findAllByCustomer(123).size());
+    }
+
+    @Test
+    void save_comparesVersion_andRejectsStaleCopies() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int acct = ledger.create(123, AccountType.CHECKING, 10_000);
+        Account stale = ledger.findOneForCustomer(123, acct);
+        Account fresh = ledger.findOneForCustomer(123, acct);
+
+        fresh.deposit(5.00);
+        ledger.save(fresh);
+        Assertions.assertEquals(stale.getVersion() + 1, fresh.getVersion());
+        ledger.save(fresh); // carries the version it wrote
+
+        stale.deposit(1.00);
+        Assertions.assertThrows(AccountConflictException.class, () -> ledger.save(stale));
+        ledger.deposit(123, acct, 100);
+        Assertions.assertThrows(AccountConflictException.class, () -> ledger.save(fresh));
+        Assertions.assertEquals(10_600, ledger.balanceCents(acct));
+    }
+
+    @Test
+    void withdraw_bounceLeavesBalanceUntouched() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int acct = ledger.create(123, AccountType.CHECKING, 100);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> ledger.withdraw(123, acct, 101));
+        Assertions.assertEquals(100, ledger.balanceCents(acct));
+    }
+
+    @Test
+    void otherCustomersAccount_isNotFound() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int acct = ledger.create(123, AccountType.CHECKING, 100);
+
+        Assertions.assertNull(ledger.findOneForCustomer(999, acct));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ledger.deposit(999, acct, 1));
+    }
+
+    /**
+     * Many threads move money back and forth between the same accounts in both directions
+     * while others deposit; nothing may deadlock and every cent must be accounted for.
+     */
+    @Test
+    void concurrentOppositeTransfers_conserveMoney() throws Exception {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int a = ledger.create(1, AccountType.CHECKING, 1_000_000);
+        int b = ledger.create(1, AccountType.SAVINGS, 1_000_000);
+
+        int threads = 8;
+        int opsPerThread = 20_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            Thread w = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < opsPerThread; i++) {
+                    try {
+                        if (id % 2 == 0) {
+                            ledger.transfer(1, a, b, 3);
+                        } else {
+                            ledger.transfer(1, b, a, 3);
+                        }
+                    } catch (IllegalStateException insufficient) {
+                        // allowed: balance can momentarily run low
+                    }
+                    if (i % 10 == 0) {
+                        ledger.deposit(1, id % 2 == 0 ? a : b, 1);
+                    }
+                }
+            });
+            workers.add(w);
+            w.start();
+        }
+        start.countDown();
+        for (Thread w : workers) {
+            w.join(30_000);
+            Assertions.assertFalse(w.isAlive(), "worker should finish (no deadlock)");
+        }
+
+        long deposits = (long) threads * (opsPerThread / 10);
+        Assertions.assertEquals(2_000_000 + deposits, ledger.balanceCents(a) + ledger.balanceCents(b));
+    }
+
+    @Test
+    void customerIndex_keepsCreationOrder_acrossResizes() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int customers = 5_000;
+        int[] first = new int[customers];
+        for (int c = 0; c < customers; c++) {
+            first[c] = ledger.create(c, AccountType.CHECKING, c);
+        }
+        int second = ledger.create(0, AccountType.SAVINGS, 0);
+
+        for (int c = 1; c < customers; c++) {
+            List<Account> accounts = ledger.findAllByCustomer(c);
+            Assertions.assertEquals(1, accounts.size());
+            Assertions.assertEquals(first[c], accounts.get(0).getAccountNumber());
+        }
+        List<Account> zero = ledger.findAllByCustomer(0);
+        Assertions.assertEquals(2, zero.size());
+        Assertions.assertEquals(first[0], zero.get(0).getAccountNumber());
+        Assertions.assertEquals(second, zero.get(1).getAccountNumber());
+        Assertions.assertTrue(ledger.findAllByCustomer(customers).isEmpty());
+    }
+
+    @Test
+    void history_pagesNewestFirst_andKeepsOnlyTheMostRecent() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int checking = ledger.create(123, AccountType.CHECKING, 0);
+        int savings = ledger.create(123, AccountType.SAVINGS, 0);
+        for (int i = 1; i <= 100; i++) {
+            ledger.deposit(123, checking, i);
+        }
+        ledger.transfer(123, checking, savings, 7);
+
+        List<AccountTransaction> first = ledger.history(123, checking, Long.MAX_VALUE, 10);
+        Assertions.assertEquals(10, first.size());
+        Assertions.assertEquals(AccountTransaction.Kind.TRANSFER_OUT, first.get(0).kind);
+        Assertions.assertEquals(savings, first.get(0).counterpartyAccount);
+        Assertions.assertEquals(100, first.get(1).amountCents);
+        Assertions.assertEquals(5050, first.get(1).balanceAfterCents);
+
+        List<AccountTransaction> all = new ArrayList<>();
+        long before = Long.MAX_VALUE;
+        for (List<AccountTransaction> page; !(page = ledger.history(123, checking, before, 10)).isEmpty(); ) {
+            all.addAll(page);
+            before = page.get(page.size() - 1).id;
+        }
+        Assertions.assertTrue(all.size() < 101, "history is bounded per account");
+        for (int i = 1; i < all.size(); i++) {
+            Assertions.assertEquals(all.get(i - 1).id - 1, all.get(i).id);
+        }
+
+        List<AccountTransaction> in = ledger.history(123, savings, Long.MAX_VALUE, 10);
+        Assertions.assertEquals(1, in.size());
+        Assertions.assertEquals(AccountTransaction.Kind.TRANSFER_IN, in.get(0).kind);
+        Assertions.assertTrue(ledger.history(999, checking, Long.MAX_VALUE, 10).isEmpty());
+    }
+
+    @Test
+    void transferToAccount_movesMoneyBetweenCustomers_inBothDirectionsWithoutDeadlock() throws Exception {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int customers = 16;
+        int[] accounts = new int[customers];
+        for (int c = 0; c < customers; c++) {
+            accounts[c] = ledger.create(c, AccountType.CHECKING, 1_000_000);
+        }
+        Assertions.assertEquals(3, ledger.findByAccountNumber(accounts[3]).getCustomerNumber());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> ledger.transferToAccount(0, accounts[1], accounts[2], 1)); // not the payer's account
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> ledger.transferToAccount(0, accounts[0], 999_999, 1));
+
+        Thread[] workers = new Thread[8];
+        for (int t = 0; t < workers.length; t++) {
+            int seed = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    int from = (seed + i) % customers;
+                    int to = (from + 1 + (i % (customers - 1))) % customers;
+                    ledger.transferToAccount(from, accounts[from], accounts[to], 1);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers) {
+            w.join(30_000);
+            Assertions.assertFalse(w.isAlive(), "worker should finish (no deadlock)");
+        }
+
+        long total = 0;
+        for (int a : accounts) {
+            total += ledger.balanceCents(a);
+        }
+        Assertions.assertEquals(customers * 1_000_000L, total);
+    }
+}
@@ -0,0 +1,122 @@
+import org.example.AccountTransaction;
+import org.example.AccountType;
+import org.example.ConcurrentLedger;
+import org.example.InterestAccrualJob;
+import org.example.JournaledAccountRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+class InterestAccrualJobTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void dailyInterest_floorsToTheCent_withoutOverflow() {
+        Assertions.assertEquals(0, InterestAccrualJob.dailyInterestCents(3_649_999, 1));
+        Assertions.assertEquals(1, InterestAccrualJob.dailyInterestCents(3_650_000, 1));
+        // $100,000.00 at 5% a year: 1369.86... cents a day
+        Assertions.assertEquals(1369, InterestAccrualJob.dailyInterestCents(10_000_000, 500));
+        // 100% a year is exactly 1/365 per day, even where balance * bp would overflow
+        Assertions.assertEquals(Long.MAX_VALUE / 365, InterestAccrualJob.dailyInterestCents(Long.MAX_VALUE, 10_000));
+        Assertions.assertEquals(0, InterestAccrualJob.dailyInterestCents(-10_000_000, 500));
+    }
+
+    @Test
+    void ledgerSweep_creditsSavingsOnly_andOnlyOncePerDate() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int accounts = 10_000;
+        int[] numbers = new int[accounts];
+        long expected = 0;
+        for (int i = 0; i < accounts; i++) {
+            AccountType type = i % 3 == 0 ? AccountType.CHECKING : AccountType.SAVINGS;
+            long cents = 1_000_000L + i * 997L;
+            numbers[i] = ledger.create(i, type, cents);
+            if (type == AccountType.SAVINGS) {
+                expected += InterestAccrualJob.dailyInterestCents(cents, 500);
+            }
+        }
+
+        InterestAccrualJob job = new InterestAccrualJob(LocalDate.of(2026, 1, 31), 500, 256);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            InterestAccrualJob.Result first = job.run(ledger, pool);
+            Assertions.assertEquals(accounts - (accounts + 2) / 3, first.accountsCredited);
+            Assertions.assertEquals(expected, first.interestCents);
+            Assertions.assertFalse(first.resumed);
+
+            InterestAccrualJob.Result again = job.run(ledger, pool);
+            Assertions.assertEquals(0, again.accountsCredited);
+            Assertions.assertTrue(again.resumed);
+
+            InterestAccrualJob otherJob = new InterestAccrualJob(LocalDate.of(2026, 1, 31), 500, 1000);
+            Assertions.assertEquals(0, otherJob.run(ledger, pool).accountsCredited);
+        } finally {
+            pool.shutdown();
+        }
+
+        Assertions.assertEquals(1_000_000L, ledger.balanceCents(numbers[0]));
+        long savingsStart = 1_000_000L + 997L;
+        long interest = InterestAccrualJob.dailyInterestCents(savingsStart, 500);
+        Assertions.assertEquals(savingsStart + interest, ledger.balanceCents(numbers[1]));
+        List<AccountTransaction> history = ledger.history(1, numbers[1], Long.MAX_VALUE, 5);
+        Assertions.assertEquals(1, history.size());
+        Assertions.assertEquals(AccountTransaction.Kind.INTEREST, history.get(0).kind);
+        Assertions.assertEquals(interest, history.get(0).amountCents);
+    }
+
+    @Test
+    void resumedRun_skipsAccountsOpenedAfterItStarted() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int before = ledger.create(1, AccountType.SAVINGS, 10_000_000);
+        // a run for the date started (and was interrupted) before the next account opened
+        ledger.startInterestRun((int) LocalDate.of(2026, 1, 31).toEpochDay(), 500);
+        int after = ledger.create(2, AccountType.SAVINGS, 10_000_000);
+
+        InterestAccrualJob.Result result = new InterestAccrualJob(LocalDate.of(2026, 1, 31), 500, 256).run(ledger);
+
+        Assertions.assertTrue(result.resumed);
+        Assertions.assertEquals(1, result.accountsCredited);
+        Assertions.assertEquals(10_001_369, ledger.balanceCents(before));
+        Assertions.assertEquals(10_000_000, ledger.balanceCents(after));
+    }
+
+    @Test
+    void journaledRun_survivesReopen_andIsNotRepeated() throws Exception {
+        int savings;
+        try (JournaledAccountRepository repo = JournaledAccountRepository.open(dir, 1_000_000, 0)) {
+            savings = repo.create(7, AccountType.SAVINGS, 10_000_000);
+            repo.create(7, AccountType.CHECKING, 10_000_000);
+            Assertions.assertEquals(1, new InterestAccrualJob(LocalDate.of(2026, 1, 31), 500, 256)
+                    .run(repo).accountsCredited);
+        }
+
+        try (JournaledAccountRepository repo = JournaledAccountRepository.open(dir, 1_000_000, 0)) {
+            Assertions.assertEquals(10_001_369, Math.round(
+                    repo.findOneForCustomer(7, savings).getAccountBalance() * 100.0));
+            InterestAccrualJob.Result again = new InterestAccrualJob(LocalDate.of(2026, 1, 31), 500, 256).run(repo);
+            Assertions.assertEquals(0, again.accountsCredited);
+            Assertions.assertTrue(again.resumed);
+
+            // the next day, then a snapshot: the run table and credit dates move into it
+            Assertions.assertEquals(1, new InterestAccrualJob(LocalDate.of(2026, 2, 1), 500, 256)
+                    .run(repo).accountsCredited);
+            repo.snapshot();
+        }
+
+        try (JournaledAccountRepository repo = JournaledAccountRepository.open(dir, 1_000_000, 0)) {
+            long balance = Math.round(repo.findOneForCustomer(7, savings).getAccountBalance() * 100.0);
+            Assertions.assertEquals(10_001_369 + InterestAccrualJob.dailyInterestCents(10_001_369, 500), balance);
+            Assertions.assertEquals(0, new InterestAccrualJob(LocalDate.of(2026, 2, 1), 500, 256)
+                    .run(repo).accountsCredited);
+            Assertions.assertThrows(IllegalStateException.class,
+                    () -> new InterestAccrualJob(LocalDate.of(2026, 2, 1), 400, 256).run(repo));
+        }
+    }
+}
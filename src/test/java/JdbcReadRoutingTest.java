@@ -0,0 +1,66 @@
+import org.example.JdbcAccountRepository;
+import org.example.OracleDBUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class JdbcReadRoutingTest {
+
+    /** Stand-in database: every query is empty, every call succeeds with zeros. */
+    private static <T> T stub(Class<T> type, AtomicInteger connections) {
+        return type.cast(Proxy.newProxyInstance(JdbcReadRoutingTest.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getConnection":
+                            connections.incrementAndGet();
+                            return stub(Connection.class, connections);
+                        case "prepareStatement":
+                            return stub(PreparedStatement.class, connections);
+                        case "prepareCall":
+                            return stub(CallableStatement.class, connections);
+                        case "executeQuery":
+                            return stub(ResultSet.class, connections);
+                        default:
+                            Class<?> r = method.getReturnType();
+                            if (r == boolean.class) return false;
+                            if (r == int.class) return 0;
+                            if (r == long.class) return 0L;
+                            return null;
+                    }
+                }));
+    }
+
+    @Test
+    void reads_useTheReadPool_exceptRightAfterTheCustomersOwnWrite() {
+        AtomicInteger primary = new AtomicInteger();
+        AtomicInteger replica = new AtomicInteger();
+        OracleDBUtil db = OracleDBUtil.of(stub(DataSource.class, primary), stub(DataSource.class, replica));
+        JdbcAccountRepository accounts = new JdbcAccountRepository(db);
+
+        accounts.findAllByCustomer(952141);
+        accounts.findOneForCustomer(952141, 1001);
+        Assertions.assertEquals(2, replica.get());
+        Assertions.assertEquals(0, primary.get());
+
+        accounts.deposit(952141, 1001, 500);
+        Assertions.assertEquals(1, primary.get());
+
+        // within DB_READ_STALENESS_MILLIS of that write, this customer reads the primary
+        accounts.findAllByCustomer(952141);
+        Assertions.assertEquals(2, primary.get());
+        // ...and everyone else keeps reading the replica
+        accounts.findAllByCustomer(989947);
+        Assertions.assertEquals(3, replica.get());
+        // payee checks must see accounts the replica may not have yet
+        accounts.findByAccountNumber(2417);
+        Assertions.assertEquals(3, primary.get());
+        Assertions.assertEquals(3, replica.get());
+    }
+}
@@ -0,0 +1,104 @@
+import org.example.Account;
+import org.example.AccountType;
+import org.example.JournaledAccountRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+class JournaledAccountRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    private static long cents(JournaledAccountRepository repo, int customer, int account) {
+        return Math.round(repo.findOneForCustomer(customer, account).getAccountBalance() * 100.0);
+    }
+
+    @Test
+    void reopen_replaysEveryOperation() throws Exception {
+        int checking;
+        int savings;
+        try (JournaledAccountRepository repo = JournaledAccountRepository.open(dir, 1_000_000, 0)) {
+            checking = repo.create(7, AccountType.CHECKING, 10_000);
+            savings = repo.create(7, AccountType.SAVINGS, 0);
+            repo.deposit(7, checking, 2_500);
+            repo.withdraw(7, checking, 500);
+            repo.transfer(7, checking, savings, 4_000);
+            repo.save(new Account(8, 5000, AccountType.CHECKING, 12.34));
+            Assertions.assertThrows(IllegalStateException.class, () -> repo.withdraw(7, savings, 1_000_000));
+        }
+
+        try (JournaledAccountRepository repo = JournaledAccountRepository.open(dir, 1_000_000, 0)) {
+            Assertions.assertEquals(3, repo.size());
+            Assertions.assertEquals(8_000, cents(repo, 7, checking));
+            Assertions.assertEquals(4_000, cents(repo, 7, savings));
+            Assertions.assertEquals(1_234, cents(repo, 8, 5000));
+
+            int next = repo.create(7, AccountType.CHECKING, 0);
+            Assertions.assertTrue(next != checking && next != savings && next != 5000);
+        }
+    }
+
+    @Test
+    void snapshot_dropsCoveredSegments_andTailIsReplayedOnTop() throws Exception {
+        int acct;
+        try (JournaledAccountRepository repo = JournaledAccountRepository.open(dir, 1_000_000, 0)) {
+            acct = repo.create(7, AccountType.CHECKING, 0);
+            for (int i = 0; i < 100; i++) {
+                repo.deposit(7, acct, 100);
+            }
+            repo.snapshot();
+            repo.withdraw(7, acct, 2_500);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            Assertions.assertEquals(1, files.filter(f -> f.getFileName().toString().startsWith("journal-")).count());
+        }
+
+        try (JournaledAccountRepository repo = JournaledAccountRepository.open(dir, 1_000_000, 0)) {
+            Assertions.assertEquals(7_500, cents(repo, 7, acct));
+        }
+    }
+
+    @Test
+    void concurrentWritersAcrossAutomaticSnapshots_recoverExactly() throws Exception {
+        int threads = 4;
+        int opsPerThread = 5_000;
+        int[] from = new int[threads];
+        int[] to = new int[threads];
+
+        try (JournaledAccountRepository repo = JournaledAccountRepository.open(dir, 3_000, 0)) {
+            for (int c = 0; c < threads; c++) {
+                from[c] = repo.create(c, AccountType.CHECKING, 1_000);
+                to[c] = repo.create(c, AccountType.SAVINGS, 0);
+            }
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int customer = t;
+                workers.add(new Thread(() -> {
+                    for (int i = 0; i < opsPerThread; i++) {
+                        repo.deposit(customer, from[customer], 3);
+                        repo.transfer(customer, from[customer], to[customer], 2);
+                        repo.withdraw(customer, to[customer], 1);
+                    }
+                }));
+            }
+            workers.forEach(Thread::start);
+            for (Thread w : workers) {
+                w.join();
+            }
+        }
+
+        try (JournaledAccountRepository repo = JournaledAccountRepository.open(dir, 3_000, 0)) {
+            for (int c = 0; c < threads; c++) {
+                Assertions.assertEquals(1_000 + opsPerThread, cents(repo, c, from[c]));
+                Assertions.assertEquals(opsPerThread, cents(repo, c, to[c]));
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+import org.example.LatencyHistogram;
+import org.example.Metrics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import javax.management.ObjectName;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentiles_areWithinBucketPrecision() {
+        LatencyHistogram h = new LatencyHistogram("test");
+        for (long micros = 1; micros <= 10_000; micros++) {
+            h.record(micros * 1_000);
+        }
+
+        Assertions.assertEquals(10_000, h.getCount());
+        Assertions.assertEquals(5_000, h.getP50Micros(), 5_000 * 0.0625);
+        Assertions.assertEquals(9_900, h.getP99Micros(), 9_900 * 0.0625);
+        Assertions.assertEquals(9_990, h.getP999Micros(), 9_990 * 0.0625);
+        Assertions.assertEquals(10_000, h.getMaxMicros(), 0.001);
+        Assertions.assertEquals(5_000.5, h.getMeanMicros(), 0.001);
+    }
+
+    @Test
+    void emptyAndTinyValues_areHandled() {
+        LatencyHistogram h = new LatencyHistogram("test");
+        Assertions.assertEquals(0, h.percentileNanos(0.99));
+
+        h.record(0);
+        h.record(3);
+        h.record(-5); // clock went backwards; counted as zero
+        h.error();
+        Assertions.assertEquals(3, h.getCount());
+        Assertions.assertEquals(1, h.getErrors());
+        Assertions.assertEquals(3, h.percentileNanos(1.0));
+    }
+
+    @Test
+    void sharedHistograms_areRegisteredWithJmx() throws Exception {
+        LatencyHistogram h = Metrics.shared().histogram("test.jmx");
+        Assertions.assertSame(h, Metrics.shared().histogram("test.jmx"));
+        h.record(2_000);
+
+        Object count = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName("org.example:type=Latency,name=test.jmx"), "Count");
+        Assertions.assertEquals(1L, count);
+        Assertions.assertTrue(Metrics.shared().report().contains("test.jmx"));
+    }
+}
@@ -0,0 +1,17 @@
+import org.example.LoadGenerator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class LoadGeneratorTest {
+
+    @Test
+    void inMemoryRun_completesEverySession_andBalancesAddUp() {
+        LoadGenerator.Result result = LoadGenerator.runInMemory(50, 500, 8, 32, 7);
+
+        Assertions.assertEquals(0, result.failedSessions, result.toString());
+        Assertions.assertEquals(100, result.accountsChecked);
+        Assertions.assertEquals(0, result.mismatches, result.toString());
+        Assertions.assertTrue(result.serviceCalls > 0);
+        Assertions.assertTrue(result.passed());
+    }
+}
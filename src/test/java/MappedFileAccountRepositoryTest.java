@@ -0,0 +1,113 @@
+import org.example.Account;
+import org.example.AccountConflictException;
+import org.example.AccountType;
+import org.example.MappedFileAccountRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class MappedFileAccountRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void balancesAndCustomerIndex_surviveReopen() throws Exception {
+        Path file = dir.resolve("accounts.dat");
+        int checking;
+        int savings;
+        try (MappedFileAccountRepository repo = MappedFileAccountRepository.open(file)) {
+            checking = repo.create(42, AccountType.CHECKING, 10_000);
+            repo.create(43, AccountType.CHECKING, 1);
+            savings = repo.create(42, AccountType.SAVINGS, 0);
+            repo.deposit(42, checking, 500);
+            repo.transfer(42, checking, savings, 2_500);
+            repo.save(new Account(44, 7000, AccountType.SAVINGS, 9.99));
+        }
+
+        try (MappedFileAccountRepository repo = MappedFileAccountRepository.open(file)) {
+            Assertions.assertEquals(4, repo.size());
+            List<Account> accounts = repo.findAllByCustomer(42);
+            Assertions.assertEquals(2, accounts.size());
+            Assertions.assertEquals(checking, accounts.get(0).getAccountNumber());
+            Assertions.assertEquals(80.00, accounts.get(0).getAccountBalance(), 0.0001);
+            Assertions.assertEquals(savings, accounts.get(1).getAccountNumber());
+            Assertions.assertEquals(AccountType.SAVINGS, accounts.get(1).getAccountType());
+            Assertions.assertEquals(25.00, accounts.get(1).getAccountBalance(), 0.0001);
+            Assertions.assertEquals(9.99, repo.findOneForCustomer(44, 7000).getAccountBalance(), 0.0001);
+
+            int next = repo.create(42, AccountType.CHECKING, 0);
+            Assertions.assertTrue(next > 7000);
+        }
+    }
+
+    @Test
+    void ownershipAndFunds_areChecked() throws Exception {
+        try (MappedFileAccountRepository repo = MappedFileAccountRepository.open(dir.resolve("accounts.dat"))) {
+            int acct = repo.create(42, AccountType.CHECKING, 100);
+
+            Assertions.assertNull(repo.findOneForCustomer(99, acct));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> repo.deposit(99, acct, 1));
+            Assertions.assertThrows(IllegalStateException.class, () -> repo.withdraw(42, acct, 101));
+            Assertions.assertEquals(1.00, repo.findOneForCustomer(42, acct).getAccountBalance(), 0.0001);
+        }
+    }
+
+    @Test
+    void save_withAnotherCustomersNumber_isRejected() throws Exception {
+        try (MappedFileAccountRepository repo = MappedFileAccountRepository.open(dir.resolve("accounts.dat"))) {
+            int acct = repo.create(42, AccountType.CHECKING, 100);
+
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> repo.save(new Account(99, acct, AccountType.CHECKING, 1_000_000.00)));
+            Assertions.assertEquals(100, repo.findOneForCustomer(42, acct).getBalanceCents());
+        }
+    }
+
+    @Test
+    void save_rejectsACopyReadBeforeTheLastChange() throws Exception {
+        try (MappedFileAccountRepository repo = MappedFileAccountRepository.open(dir.resolve("accounts.dat"))) {
+            int acct = repo.create(42, AccountType.CHECKING, 100);
+            Account copy = repo.findOneForCustomer(42, acct);
+            repo.deposit(42, acct, 50);
+
+            copy.deposit(10.00);
+            Assertions.assertThrows(AccountConflictException.class, () -> repo.save(copy));
+            Assertions.assertEquals(150, repo.findOneForCustomer(42, acct).getBalanceCents());
+
+            Account fresh = repo.findOneForCustomer(42, acct);
+            fresh.deposit(10.00);
+            repo.save(fresh);
+            Assertions.assertEquals(1_150, repo.findOneForCustomer(42, acct).getBalanceCents());
+            Assertions.assertEquals(fresh.getVersion(), repo.findOneForCustomer(42, acct).getVersion());
+        }
+    }
+
+    @Test
+    void versionOneFile_isUpgradedOnOpen() throws Exception {
+        Path file = dir.resolve("old.dat");
+        ByteBuffer old = ByteBuffer.allocate(64 + 2 * 24).order(ByteOrder.LITTLE_ENDIAN);
+        old.putInt(0, 0x41544D41).putInt(4, 1).putInt(8, 2);
+        old.putInt(64, 1001).putInt(68, 42).putInt(72, AccountType.CHECKING.ordinal()).putInt(76, -1).putLong(80, 1_234);
+        old.putInt(88, 1002).putInt(92, 42).putInt(96, AccountType.SAVINGS.ordinal()).putInt(100, 0).putLong(104, 99);
+        Files.write(file, old.array());
+
+        try (MappedFileAccountRepository repo = MappedFileAccountRepository.open(file)) {
+            List<Account> accounts = repo.findAllByCustomer(42);
+            Assertions.assertEquals(2, accounts.size());
+            Assertions.assertEquals(1_234, accounts.get(0).getBalanceCents());
+            Assertions.assertEquals(AccountType.SAVINGS, accounts.get(1).getAccountType());
+            Assertions.assertEquals(99, accounts.get(1).getBalanceCents());
+            Assertions.assertEquals(1_334, repo.deposit(42, 1001, 100));
+        }
+        try (MappedFileAccountRepository repo = MappedFileAccountRepository.open(file)) {
+            Assertions.assertEquals(1_334, repo.findOneForCustomer(42, 1001).getBalanceCents());
+        }
+    }
+}
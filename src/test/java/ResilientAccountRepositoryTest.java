@@ -0,0 +1,94 @@
+import org.example.AccountRepository;
+import org.example.AccountType;
+import org.example.CachingAccountRepository;
+import org.example.ConcurrentLedger;
+import org.example.DatabaseUnavailableException;
+import org.example.ResilientAccountRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+class ResilientAccountRepositoryTest {
+
+    private volatile boolean down;
+    private volatile boolean stalled;
+    private volatile boolean cancelled;
+
+    /** The ledger, except that it throws while {@code down} and hangs while {@code stalled}. */
+    private AccountRepository flakyDatabase(ConcurrentLedger ledger) {
+        return (AccountRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AccountRepository.class}, (proxy, method, args) -> {
+                    if (down) {
+                        throw new RuntimeException("ORA-03113: end-of-file on communication channel");
+                    }
+                    if (cancelled) {
+                        throw new DatabaseUnavailableException("statement cancelled after the query timeout");
+                    }
+                    if (stalled) {
+                        Thread.sleep(10_000);
+                    }
+                    try {
+                        return method.invoke(ledger, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                });
+    }
+
+    @Test
+    void breakerOpensOnFailures_servesLastKnownBalances_andClosesAfterAGoodTrial() throws Exception {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int account = ledger.create(952141, AccountType.CHECKING, 50_000);
+        var resilient = new ResilientAccountRepository(flakyDatabase(ledger), 200, 100, 4, 50, 300);
+        var accounts = new CachingAccountRepository(resilient, 100, 30, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(50_000, accounts.findAllByCustomer(952141).get(0).getBalanceCents());
+        // domain errors mean the database answered
+        Assertions.assertThrows(IllegalStateException.class, () -> accounts.withdraw(952141, account, 99_999));
+        Assertions.assertEquals(ResilientAccountRepository.State.CLOSED, resilient.state());
+
+        down = true;
+        Assertions.assertThrows(RuntimeException.class, () -> accounts.deposit(952141, account, 100));
+        Assertions.assertThrows(RuntimeException.class, () -> accounts.deposit(952141, account, 100));
+        Assertions.assertEquals(ResilientAccountRepository.State.OPEN, resilient.state());
+        Assertions.assertTrue(accounts.isDegraded());
+
+        // the deposits invalidated the cached list, but it is still the last known state
+        Assertions.assertEquals(50_000, accounts.findAllByCustomer(952141).get(0).getBalanceCents());
+        Assertions.assertEquals(1, accounts.stats().staleServed);
+        long start = System.nanoTime();
+        Assertions.assertThrows(DatabaseUnavailableException.class, () -> accounts.deposit(952141, account, 100));
+        Assertions.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+        Assertions.assertEquals(2, resilient.rejectedCalls());
+
+        // after the open period one trial goes through; a hung one hits the deadline and reopens
+        down = false;
+        stalled = true;
+        Thread.sleep(350);
+        Assertions.assertThrows(DatabaseUnavailableException.class, () -> accounts.deposit(952141, account, 100));
+        Assertions.assertEquals(1, resilient.timedOutCalls());
+        Assertions.assertEquals(ResilientAccountRepository.State.OPEN, resilient.state());
+
+        stalled = false;
+        Thread.sleep(350);
+        Assertions.assertEquals(50_100, accounts.deposit(952141, account, 100));
+        Assertions.assertEquals(ResilientAccountRepository.State.CLOSED, resilient.state());
+        Assertions.assertEquals(50_100, accounts.findAllByCustomer(952141).get(0).getBalanceCents());
+    }
+
+    @Test
+    void cancelledStatements_countAsFailures() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        int account = ledger.create(952141, AccountType.CHECKING, 50_000);
+        var resilient = new ResilientAccountRepository(flakyDatabase(ledger), 1_000, 500, 2, 50, 60_000);
+
+        cancelled = true;
+        Assertions.assertThrows(DatabaseUnavailableException.class, () -> resilient.deposit(952141, account, 100));
+
+        Assertions.assertEquals(ResilientAccountRepository.State.OPEN, resilient.state());
+        Assertions.assertEquals(0, resilient.timedOutCalls());
+    }
+}
@@ -0,0 +1,87 @@
+package org.example;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class AccountNumberAllocatorTest {
+
+    @Test
+    void concurrentNext_acrossRefills_neverRepeatsANumber() throws Exception {
+        AtomicInteger reservations = new AtomicInteger();
+        AtomicInteger counter = new AtomicInteger(1000);
+        AccountNumberAllocator.BlockSource consecutive = AccountNumberAllocator.consecutive(counter);
+        AccountNumberAllocator allocator = new AccountNumberAllocator(count -> {
+            reservations.incrementAndGet();
+            return consecutive.reserve(count);
+        }, 7);
+        Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 500; i++) {
+                    Assertions.assertTrue(seen.add(allocator.next()));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals(4_000, seen.size());
+        Assertions.assertTrue(reservations.get() >= 4_000 / 7);
+    }
+
+    @Test
+    void bulkNext_reservesLargeRequestsInOneCall_andSmallOnesFromTheBlock() {
+        AtomicInteger reservations = new AtomicInteger();
+        AtomicInteger counter = new AtomicInteger(1000);
+        AccountNumberAllocator.BlockSource consecutive = AccountNumberAllocator.consecutive(counter);
+        AccountNumberAllocator allocator = new AccountNumberAllocator(count -> {
+            reservations.incrementAndGet();
+            return consecutive.reserve(count);
+        }, 10);
+
+        int[] small = allocator.next(3);
+        int[] large = allocator.next(25);
+
+        Assertions.assertArrayEquals(new int[]{1000, 1001, 1002}, small);
+        Assertions.assertEquals(25, large.length);
+        Assertions.assertEquals(2, reservations.get());
+        Set<Integer> all = new HashSet<>();
+        for (int n : small) all.add(n);
+        for (int n : large) all.add(n);
+        Assertions.assertEquals(28, all.size());
+    }
+
+    @Test
+    void bulkNext_ignoresSurplusFromTheSource() {
+        AccountNumberAllocator allocator = new AccountNumberAllocator(count -> new int[count + 5], 4);
+
+        Assertions.assertEquals(12, allocator.next(12).length);
+    }
+
+    @Test
+    void emptyBlock_throws() {
+        AccountNumberAllocator allocator = new AccountNumberAllocator(count -> new int[0], 4);
+
+        Assertions.assertThrows(IllegalStateException.class, allocator::next);
+        Assertions.assertThrows(IllegalStateException.class, () -> allocator.next(10));
+    }
+}
@@ -0,0 +1,154 @@
+package org.example;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class WriteBehindBalanceWriterTest {
+
+    /** Stand-in database that records each committed balance batch as {cents, customer, account} rows. */
+    private static final class FakeDatabase {
+        final Set<Long> accounts;
+        final List<List<long[]>> commits = new ArrayList<>();
+        final List<CompletableFuture<Void>> watched = new ArrayList<>();
+        boolean anyDoneAtCommit;
+        private List<long[]> updated = List.of();
+
+        FakeDatabase(Set<Long> accounts) {
+            this.accounts = accounts;
+        }
+
+        OracleDBUtil db() {
+            DataSource ds = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("getConnection")) {
+                            return connection();
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+            return OracleDBUtil.of(ds, null);
+        }
+
+        private Connection connection() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "getAutoCommit":
+                                return true;
+                            case "prepareStatement":
+                                return statement(((String) args[0]).startsWith("UPDATE"));
+                            case "commit":
+                                anyDoneAtCommit |= watched.stream().anyMatch(CompletableFuture::isDone);
+                                commits.add(updated);
+                                return null;
+                            default:
+                                return null;
+                        }
+                    });
+        }
+
+        private PreparedStatement statement(boolean balanceUpdate) {
+            long[] row = new long[3];
+            List<long[]> rows = new ArrayList<>();
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "setLong":
+                            case "setInt":
+                                row[(Integer) args[0] - 1] = ((Number) args[1]).longValue();
+                                return null;
+                            case "addBatch":
+                                rows.add(row.clone());
+                                return null;
+                            case "executeBatch":
+                                int[] counts = new int[rows.size()];
+                                if (balanceUpdate) {
+                                    for (int i = 0; i < counts.length; i++) {
+                                        counts[i] = accounts.contains(rows.get(i)[1] << 32 | rows.get(i)[2]) ? 1 : 0;
+                                    }
+                                    updated = rows;
+                                }
+                                return counts;
+                            default:
+                                return null;
+                        }
+                    });
+        }
+    }
+
+    private static long key(int customer, int account) {
+        return (long) customer << 32 | account;
+    }
+
+    @Test
+    void depositsToOneAccount_coalesceIntoOneBatchRow() throws Exception {
+        FakeDatabase fake = new FakeDatabase(Set.of(key(1, 1001), key(1, 1002)));
+        try (WriteBehindBalanceWriter writer = new WriteBehindBalanceWriter(fake.db(), 100, 60_000)) {
+            writer.addDelta(1, 1001, 100);
+            writer.addDelta(1, 1002, 50);
+            writer.addDelta(1, 1001, 200);
+            writer.flush();
+
+            Assertions.assertEquals(1, fake.commits.size());
+            List<long[]> batch = fake.commits.get(0);
+            Assertions.assertEquals(2, batch.size());
+            Assertions.assertArrayEquals(new long[]{300, 1, 1001}, batch.get(0));
+            Assertions.assertArrayEquals(new long[]{50, 1, 1002}, batch.get(1));
+        }
+    }
+
+    @Test
+    void futures_completeOnlyAfterTheCommit() throws Exception {
+        FakeDatabase fake = new FakeDatabase(Set.of(key(1, 1001)));
+        try (WriteBehindBalanceWriter writer = new WriteBehindBalanceWriter(fake.db(), 100, 60_000)) {
+            fake.watched.add(writer.addDelta(1, 1001, 100));
+            fake.watched.add(writer.addDelta(1, 1001, 100));
+            Assertions.assertFalse(fake.watched.get(0).isDone());
+
+            writer.flush();
+
+            Assertions.assertFalse(fake.anyDoneAtCommit);
+            for (CompletableFuture<Void> f : fake.watched) {
+                Assertions.assertNull(f.get(1, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    void unknownAccount_failsWithIllegalArgument() throws Exception {
+        FakeDatabase fake = new FakeDatabase(Set.of(key(1, 1001)));
+        try (WriteBehindBalanceWriter writer = new WriteBehindBalanceWriter(fake.db(), 100, 60_000)) {
+            CompletableFuture<Void> good = writer.addDelta(1, 1001, 100);
+            CompletableFuture<Void> bad = writer.addDelta(2, 1001, 100);
+            writer.flush();
+
+            good.get(1, TimeUnit.SECONDS);
+            ExecutionException ex = Assertions.assertThrows(ExecutionException.class,
+                    () -> bad.get(1, TimeUnit.SECONDS));
+            Assertions.assertTrue(ex.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    void close_flushesWhatIsQueued() throws Exception {
+        FakeDatabase fake = new FakeDatabase(Set.of(key(1, 1001)));
+        WriteBehindBalanceWriter writer = new WriteBehindBalanceWriter(fake.db(), 100, 60_000);
+        CompletableFuture<Void> done = writer.addDelta(1, 1001, 700);
+
+        writer.close();
+
+        Assertions.assertNull(done.get(1, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, fake.commits.size());
+        Assertions.assertThrows(IllegalStateException.class, () -> writer.addDelta(1, 1001, 1));
+    }
+}